@@ -0,0 +1,191 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Animated WebP, APNG or GIF output fed frame by frame from the video loop.
+ * Every format is written as frames arrive, so memory does not grow with the
+ * frame count. Frames must be RGBA.
+ */
+abstract class AnimatedImageWriter {
+
+    private static final int MAX_WEBP_SPEED = 6;
+    private static final int DEFAULT_WEBP_SPEED = 4;
+
+    abstract void write(CapturedFrame frame) throws Exception;
+
+    abstract void finish() throws Exception;
+
+    abstract void close();
+
+    static AnimatedImageWriter open(
+        App.CliArguments arguments,
+        Path output,
+        int width,
+        int height,
+        int fps
+    ) throws Exception {
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        switch (arguments.animationFormat()) {
+            case GIF:
+                return new Gif(output, width, height, fps);
+            case APNG:
+                return new Recorder(apng(output, width, height, fps));
+            case WEBP:
+            default:
+                return new Recorder(webp(arguments, output, width, height, fps));
+        }
+    }
+
+    // The webp muxer turns a multi-frame stream into an animation. Frames
+    // use the still libwebp encoder, each compressed as it arrives, rather
+    // than libwebp_anim which keeps the whole animation until the end.
+    private static FFmpegFrameRecorder webp(
+        App.CliArguments arguments,
+        Path output,
+        int width,
+        int height,
+        int fps
+    ) {
+        FFmpegFrameRecorder recorder = newRecorder(output, width, height, fps);
+        recorder.setFormat("webp");
+        recorder.setVideoCodecName("libwebp");
+        recorder.setOption("loop", "0");
+        int speed = arguments.imageSpeed() != null
+            ? Math.min(MAX_WEBP_SPEED, arguments.imageSpeed())
+            : DEFAULT_WEBP_SPEED;
+        recorder.setVideoOption(
+            "compression_level",
+            Integer.toString(MAX_WEBP_SPEED - speed)
+        );
+        recorder.setVideoOption(
+            "quality",
+            Integer.toString(arguments.imageQuality())
+        );
+        if (arguments.imageLossless()) {
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_BGRA);
+            recorder.setVideoOption("lossless", "1");
+        } else {
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_YUVA420P);
+        }
+        return recorder;
+    }
+
+    private static FFmpegFrameRecorder apng(
+        Path output,
+        int width,
+        int height,
+        int fps
+    ) {
+        FFmpegFrameRecorder recorder = newRecorder(output, width, height, fps);
+        recorder.setFormat("apng");
+        recorder.setVideoCodecName("apng");
+        recorder.setPixelFormat(avutil.AV_PIX_FMT_RGBA);
+        recorder.setOption("plays", "0");
+        recorder.setVideoOption("pred", "mixed");
+        return recorder;
+    }
+
+    private static FFmpegFrameRecorder newRecorder(
+        Path output,
+        int width,
+        int height,
+        int fps
+    ) {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(
+            output.toString(),
+            width,
+            height,
+            0
+        );
+        recorder.setFrameRate(fps);
+        return recorder;
+    }
+
+    private static final class Recorder extends AnimatedImageWriter {
+
+        private final FFmpegFrameRecorder recorder;
+
+        private Recorder(FFmpegFrameRecorder recorder) throws Exception {
+            this.recorder = recorder;
+            try {
+                recorder.start();
+            } catch (Exception ex) {
+                recorder.release();
+                throw ex;
+            }
+        }
+
+        @Override
+        void write(CapturedFrame frame) throws Exception {
+            recorder.recordImage(
+                frame.width(),
+                frame.height(),
+                Frame.DEPTH_UBYTE,
+                4,
+                frame.width() * 4,
+                avutil.AV_PIX_FMT_RGBA,
+                frame.pixels()
+            );
+        }
+
+        @Override
+        void finish() throws Exception {
+            recorder.stop();
+        }
+
+        @Override
+        void close() {
+            try {
+                recorder.release();
+            } catch (Exception ex) {
+                App.logWarn("Unable to release animated image encoder: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static final class Gif extends AnimatedImageWriter {
+
+        private final OutputStream out;
+        private final GifEncoder encoder;
+
+        private Gif(Path output, int width, int height, int fps)
+            throws IOException {
+            this.out = new BufferedOutputStream(Files.newOutputStream(output));
+            try {
+                this.encoder = new GifEncoder(out, width, height, fps);
+            } catch (IOException | RuntimeException ex) {
+                out.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        void write(CapturedFrame frame) throws Exception {
+            encoder.writeFrame(frame.pixels());
+        }
+
+        @Override
+        void finish() throws Exception {
+            encoder.finish();
+        }
+
+        @Override
+        void close() {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                App.logWarn("Unable to close GIF output: " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
 import com.badlogic.gdx.files.FileHandle;
@@ -29,7 +31,12 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Stream;
 
 public class App extends ApplicationAdapter {
@@ -109,25 +116,181 @@ public class App extends ApplicationAdapter {
         }
     }
 
-    private final CliArguments arguments;
+    // libGDX tracks textures, frame buffers and shaders in unsynchronized
+    // static registries, and the one Gdx.gl stages float[] uniforms in an
+    // unsynchronized scratch buffer. Worker contexts create and free GL
+    // objects, and upload array uniforms, under this lock.
+    static final Object SHARED_RESOURCES = new Object();
+
+    private final List<CliArguments> jobs;
+    private final boolean batchMode;
+    private CliArguments arguments;
     private TextureAtlas atlas;
+    private SkeletonData skeletonData;
     private Skeleton skeleton;
     private SkeletonRenderer renderer;
     private TwoColorPolygonBatch batch;
     private OrthographicCamera camera;
     private FrameBuffer frameBuffer;
+    private FrameRenderer frameRenderer;
     private AnimationState animationState;
+    private String selectedAnimation;
     private int outputWidth;
     private int outputHeight;
     private boolean exported;
     private float[] worldVerticesBuffer = new float[64];
+    private final CountDownLatch shutdown = new CountDownLatch(1);
+    private volatile Throwable failure;
+    private volatile BooleanSupplier cancellation;
 
     public App(CliArguments arguments) {
-        this.arguments = arguments;
+        this(Collections.singletonList(arguments), false);
+    }
+
+    /**
+     * Runs every job in turn in one graphics context. The polygon batch and
+     * skeleton renderer are shared; each job's atlas, frame buffer and frame
+     * renderer are disposed before the next one starts. In batch mode even a
+     * single job is claimed and isolated like the others.
+     */
+    App(List<CliArguments> jobs, boolean batchMode) {
+        this.jobs = jobs;
+        this.batchMode = batchMode;
+        this.arguments = jobs.get(0);
     }
 
     @Override
     public void create() {
+        try {
+            export();
+        } catch (RuntimeException | Error ex) {
+            failure = ex;
+            shutdown.countDown();
+            throw ex;
+        }
+    }
+
+    private void export() {
+        if (batchMode || arguments.claimDir() != null) {
+            exportBatch();
+        } else {
+            exportJob();
+            exported = true;
+            logInfo("Export completed successfully.");
+        }
+        Gdx.app.exit();
+    }
+
+    private void exportBatch() {
+        long batchStart = System.nanoTime();
+        int failed = 0;
+        if (arguments.claimDir() != null) {
+            try (ShardLeases leases = openLeases()) {
+                failed = new GlWorkerPool(this, jobs, arguments.workers(), leases).run();
+            }
+        } else if (arguments.workers() > 1) {
+            failed = new GlWorkerPool(this, jobs, arguments.workers(), null).run();
+        } else {
+            for (int i = 0; i < jobs.size(); i++) {
+                if (!runBatchJob(jobs.get(i), i + 1, jobs.size())) {
+                    failed++;
+                }
+            }
+        }
+        exported = failed < jobs.size();
+        logInfo(
+            String.format(
+                Locale.ROOT,
+                "Batch completed: %d of %d job(s) succeeded in %.1fs",
+                jobs.size() - failed,
+                jobs.size(),
+                (System.nanoTime() - batchStart) / 1_000_000_000.0
+            )
+        );
+    }
+
+    private ShardLeases openLeases() {
+        try {
+            return ShardLeases.open(arguments.claimDir(), arguments.leaseSeconds());
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Unable to open claim directory: " + arguments.claimDir(),
+                ex
+            );
+        }
+    }
+
+    /**
+     * Runs one batch job in the context current on this thread and frees its
+     * resources afterwards. Returns false if the job failed.
+     */
+    boolean runBatchJob(CliArguments job, int number, int total) {
+        arguments = job;
+        long start = System.nanoTime();
+        logInfo("Batch job " + number + "/" + total + ": " + job.atlasPath());
+        try {
+            exportJob();
+            logInfo(
+                String.format(
+                    Locale.ROOT,
+                    "Batch job %d/%d done in %.0f ms",
+                    number,
+                    total,
+                    (System.nanoTime() - start) / 1_000_000.0
+                )
+            );
+            return true;
+        } catch (RuntimeException ex) {
+            logError("Batch job " + number + " failed: " + ex.getMessage(), ex);
+            return false;
+        } finally {
+            releaseJob();
+        }
+    }
+
+    private void exportJob() {
+        // Hashed before rendering (by the up-to-date check, or here) so
+        // edits made meanwhile trigger a rebuild.
+        String fingerprint = null;
+        if (arguments.incremental() && !arguments.benchmarkEncoders()) {
+            try {
+                fingerprint = BuildFingerprint.forJob(arguments);
+            } catch (IOException ex) {
+                logWarn("Unable to fingerprint inputs: " + ex.getMessage());
+            }
+        }
+        load();
+
+        ImageGenerator imageGenerator = new ImageGenerator(
+            frameRenderer,
+            new StillImageWriter(arguments)
+        );
+        VideoGenerator videoGenerator = new VideoGenerator(
+            this,
+            arguments,
+            frameRenderer,
+            skeleton,
+            animationState
+        );
+
+        if (arguments.benchmarkEncoders()) {
+            new EncoderBenchmark(this, arguments, frameRenderer, skeleton).run();
+        } else if (arguments.shouldRenderVideo()) {
+            videoGenerator.generate();
+        } else {
+            imageGenerator.generate(arguments.outputPath(), skeleton);
+        }
+        if (fingerprint != null) {
+            BuildFingerprint.record(arguments, fingerprint);
+        }
+    }
+
+    /**
+     * Loads the atlas and skeleton, sizes the output around the posed
+     * skeleton and creates the frame renderer. Must run on the thread that
+     * owns the graphics context.
+     */
+    void load() {
         FileHandle atlasHandle = Gdx.files.absolute(
             arguments.atlasPath().toString()
         );
@@ -140,9 +303,11 @@ public class App extends ApplicationAdapter {
             arguments.textureDirectory().toString()
         );
         logInfo("Loading textures from: " + texturesDirHandle.path());
-        atlas = new TextureAtlas(atlasHandle, texturesDirHandle);
+        synchronized (SHARED_RESOURCES) {
+            atlas = new TextureAtlas(atlasHandle, texturesDirHandle);
+        }
 
-        SkeletonData skeletonData = readSkeletonData(
+        skeletonData = readSkeletonData(
             arguments.skeletonPath(),
             arguments.scale()
         );
@@ -158,9 +323,7 @@ public class App extends ApplicationAdapter {
             skeletonData.getAnimations().addAll(animationData.getAnimations());
         }
 
-        skeleton = new Skeleton(skeletonData);
-        applySkin(arguments.skinName(), skeletonData);
-        skeleton.setToSetupPose();
+        skeleton = createSkeleton();
         logInfo(
             "Skeleton ready with " +
                 skeletonData.getBones().size +
@@ -169,7 +332,7 @@ public class App extends ApplicationAdapter {
                 " animation(s)."
         );
 
-        String selectedAnimation = arguments.animationName();
+        selectedAnimation = arguments.animationName();
         if (
             (selectedAnimation == null || selectedAnimation.isEmpty()) &&
             skeletonData.getAnimations().size > 0
@@ -177,24 +340,16 @@ public class App extends ApplicationAdapter {
             selectedAnimation = skeletonData.getAnimations().first().getName();
         }
 
-        if (selectedAnimation != null && !selectedAnimation.isEmpty()) {
-            AnimationStateData stateData = new AnimationStateData(skeletonData);
-            animationState = new AnimationState(stateData);
-            boolean loop = arguments.videoSeconds() > 0f;
-            animationState.setAnimation(0, selectedAnimation, loop);
+        animationState = createAnimationState();
+        if (animationState != null) {
             logInfo(
                 "Selected animation: " +
                     selectedAnimation +
-                    (loop ? " (looping)" : "")
+                    (arguments.videoSeconds() > 0f ? " (looping)" : "")
             );
         }
 
-        float initialTime = Math.max(0f, arguments.animationTime());
-        if (initialTime > 0f) {
-            advanceAnimation(initialTime);
-        } else {
-            applyWorldTransform(skeleton);
-        }
+        applyInitialTime(skeleton, animationState);
 
         GeometryBounds geometryBounds = computeGeometryBounds(skeleton);
         float width = geometryBounds.hasGeometry()
@@ -239,9 +394,112 @@ public class App extends ApplicationAdapter {
         camera.position.set(outputWidth / 2f, outputHeight / 2f, 0f);
         camera.update();
 
-        batch = new TwoColorPolygonBatch();
-        renderer = new SkeletonRenderer();
-        renderer.setPremultipliedAlpha(false);
+        synchronized (SHARED_RESOURCES) {
+            frameRenderer = createFrameRenderer();
+        }
+    }
+
+    @Override
+    public void render() {
+        // Rendering work is handled synchronously inside create().
+    }
+
+    @Override
+    public void dispose() {
+        releaseJob();
+        synchronized (SHARED_RESOURCES) {
+            if (batch != null) {
+                batch.dispose();
+            }
+        }
+        shutdown.countDown();
+    }
+
+    /**
+     * Runs one more job in this application's graphics context, sharing the
+     * polygon batch and skeleton renderer with earlier jobs. Video rendering
+     * stops with a {@link CancellationException} once {@code cancelled}
+     * returns true.
+     */
+    void runJob(CliArguments job, BooleanSupplier cancelled) {
+        arguments = job;
+        cancellation = cancelled;
+        try {
+            exportJob();
+        } finally {
+            cancellation = null;
+            releaseJob();
+        }
+    }
+
+    void checkCancelled() {
+        BooleanSupplier cancelled = cancellation;
+        if (cancelled != null && cancelled.getAsBoolean()) {
+            throw new CancellationException("Job cancelled.");
+        }
+    }
+
+    private void releaseJob() {
+        synchronized (SHARED_RESOURCES) {
+            if (frameRenderer != null) {
+                frameRenderer.dispose();
+                frameRenderer = null;
+            }
+            if (atlas != null) {
+                atlas.dispose();
+                atlas = null;
+            }
+            if (frameBuffer != null) {
+                frameBuffer.dispose();
+                frameBuffer = null;
+            }
+        }
+        skeletonData = null;
+        skeleton = null;
+        animationState = null;
+        selectedAnimation = null;
+    }
+
+    void awaitShutdown() throws InterruptedException {
+        shutdown.await();
+    }
+
+    Throwable failure() {
+        return failure;
+    }
+
+    FrameRenderer frameRenderer() {
+        return frameRenderer;
+    }
+
+    Skeleton skeleton() {
+        return skeleton;
+    }
+
+    AnimationState animationState() {
+        return animationState;
+    }
+
+    private FrameRenderer createFrameRenderer() {
+        if (arguments.rendererBackend() == CliArguments.RendererBackend.SOFTWARE) {
+            logInfo(
+                "Using software renderer with " +
+                    arguments.renderThreads() +
+                    " thread(s)."
+            );
+            return new SoftwareFrameRenderer(
+                camera,
+                outputWidth,
+                outputHeight,
+                arguments.renderThreads()
+            );
+        }
+
+        if (batch == null) {
+            batch = new TwoColorPolygonBatch();
+            renderer = new SkeletonRenderer();
+            renderer.setPremultipliedAlpha(false);
+        }
 
         frameBuffer = new FrameBuffer(
             Pixmap.Format.RGBA8888,
@@ -250,54 +508,84 @@ public class App extends ApplicationAdapter {
             true
         );
 
-        FrameRenderer frameRenderer = new FrameRenderer(
+        return new GlFrameRenderer(
             renderer,
             batch,
             camera,
             frameBuffer,
             outputWidth,
-            outputHeight
-        );
-
-        ImageGenerator imageGenerator = new ImageGenerator(frameRenderer);
-        VideoGenerator videoGenerator = new VideoGenerator(
-            this,
-            arguments,
-            frameRenderer,
-            skeleton,
-            animationState
+            outputHeight,
+            resolveReadbackDepth()
         );
+    }
 
-        if (arguments.shouldRenderVideo()) {
-            videoGenerator.generate();
-        } else {
-            imageGenerator.generate(arguments.outputPath(), skeleton);
+    private int resolveReadbackDepth() {
+        if (
+            arguments.readbackMode() != CliArguments.ReadbackMode.PBO ||
+            !arguments.shouldRenderVideo()
+        ) {
+            return 1;
+        }
+        if (!PboReadback.isSupported()) {
+            logWarn(
+                "Pixel buffer objects or fences are unavailable; falling back to synchronous readback."
+            );
+            return 1;
         }
+        logInfo(
+            "Using asynchronous PBO readback with " +
+                arguments.readbackBuffers() +
+                " buffer(s)."
+        );
+        return arguments.readbackBuffers();
+    }
 
-        exported = true;
-        logInfo("Export completed successfully.");
-        Gdx.app.exit();
+    /**
+     * Builds an independent skeleton and animation state posed exactly like
+     * the primary one was at export start, so callers can advance it
+     * separately (e.g. to render a later segment of the timeline).
+     */
+    SkeletonInstance createSkeletonInstance() {
+        Skeleton copy = createSkeleton();
+        AnimationState state = createAnimationState();
+        applyInitialTime(copy, state);
+        copy.setPosition(skeleton.getX(), skeleton.getY());
+        applyWorldTransform(copy);
+        return new SkeletonInstance(copy, state);
     }
 
-    @Override
-    public void render() {
-        // Rendering work is handled synchronously inside create().
+    private Skeleton createSkeleton() {
+        Skeleton created = new Skeleton(skeletonData);
+        applySkin(created, arguments.skinName(), skeletonData);
+        created.setToSetupPose();
+        return created;
     }
 
-    @Override
-    public void dispose() {
-        if (batch != null) {
-            batch.dispose();
-        }
-        if (atlas != null) {
-            atlas.dispose();
+    private AnimationState createAnimationState() {
+        if (selectedAnimation == null || selectedAnimation.isEmpty()) {
+            return null;
         }
-        if (frameBuffer != null) {
-            frameBuffer.dispose();
+        AnimationStateData stateData = new AnimationStateData(skeletonData);
+        AnimationState state = new AnimationState(stateData);
+        boolean loop = arguments.videoSeconds() > 0f;
+        state.setAnimation(0, selectedAnimation, loop);
+        return state;
+    }
+
+    private void applyInitialTime(Skeleton target, AnimationState state) {
+        float initialTime = Math.max(0f, arguments.animationTime());
+        if (initialTime > 0f) {
+            advance(target, state, initialTime);
+        } else {
+            applyWorldTransform(target);
         }
     }
 
-    private void applySkin(String requestedSkin, SkeletonData skeletonData) {
+    private void applySkin(
+        Skeleton skeleton,
+        String requestedSkin,
+        SkeletonData skeletonData
+    ) {
         if (requestedSkin == null || requestedSkin.isEmpty()) {
             Skin defaultSkin = skeletonData.getDefaultSkin();
             if (defaultSkin != null) {
@@ -333,19 +621,23 @@ public class App extends ApplicationAdapter {
     }
 
     void advanceAnimation(float delta) {
+        advance(skeleton, animationState, delta);
+    }
+
+    static void advance(Skeleton target, AnimationState state, float delta) {
         if (delta > 0f) {
-            advanceSkeleton(skeleton, delta);
-            if (animationState != null) {
-                animationState.update(delta);
+            advanceSkeleton(target, delta);
+            if (state != null) {
+                state.update(delta);
             }
         }
-        if (animationState != null) {
-            animationState.apply(skeleton);
+        if (state != null) {
+            state.apply(target);
         }
-        applyWorldTransform(skeleton);
+        applyWorldTransform(target);
     }
 
-    private void advanceSkeleton(Skeleton target, float delta) {
+    private static void advanceSkeleton(Skeleton target, float delta) {
         if (delta <= 0f || SKELETON_UPDATE_METHOD == null) {
             return;
         }
@@ -425,7 +717,7 @@ public class App extends ApplicationAdapter {
         }
     }
 
-    private void applyWorldTransform(Skeleton target) {
+    private static void applyWorldTransform(Skeleton target) {
         if (UPDATE_WORLD_TRANSFORM_WITH_PHYSICS != null) {
             Object physicsArg = PHYSICS_NONE_ENUM != null
                 ? PHYSICS_NONE_ENUM
@@ -493,9 +785,52 @@ public class App extends ApplicationAdapter {
     }
 
     public static void main(String[] args) {
-        CliArguments cliArguments;
+        if (args.length > 0 && "--reencode-spool".equals(args[0])) {
+            try {
+                SpoolReencoder.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException ex) {
+                logError(ex.getMessage(), null);
+            }
+            return;
+        }
+        if (args.length > 0 && "--serve".equals(args[0])) {
+            try {
+                RenderDaemon.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException ex) {
+                logError(ex.getMessage(), null);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if (args.length > 0 && "--transcode-worker".equals(args[0])) {
+            try {
+                TranscodeWorker.run(Arrays.copyOfRange(args, 1, args.length));
+            } catch (IllegalArgumentException ex) {
+                logError(ex.getMessage(), null);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        if (args.length > 0 && "--benchmark-kernels".equals(args[0])) {
+            try {
+                PixelKernelBenchmark.run(
+                    Arrays.copyOfRange(args, 1, args.length),
+                    System.out
+                );
+            } catch (IllegalArgumentException ex) {
+                logError(ex.getMessage(), null);
+            }
+            return;
+        }
+
+        boolean batchMode = BatchJobs.isBatch(args);
+        List<CliArguments> jobs;
         try {
-            cliArguments = CliArguments.parse(args);
+            jobs = batchMode
+                ? BatchJobs.parse(args)
+                : Collections.singletonList(CliArguments.parse(args));
         } catch (CliArguments.HelpRequested ex) {
             CliArguments.printUsage(System.out);
             return;
@@ -504,28 +839,47 @@ public class App extends ApplicationAdapter {
             CliArguments.printUsage();
             return;
         }
+        if (jobs.get(0).incremental()) {
+            jobs = BuildFingerprint.outdated(jobs);
+            if (jobs.isEmpty()) {
+                logInfo("All previews are up to date.");
+                return;
+            }
+        }
+        CliArguments cliArguments = jobs.get(0);
 
-        Lwjgl3ApplicationConfiguration config =
-            new Lwjgl3ApplicationConfiguration();
-        config.setTitle("Spine Preview Generator");
-        config.useVsync(false);
-        config.setForegroundFPS(0);
-        config.setIdleFPS(0);
-        config.setWindowedMode(
+        if (cliArguments.videoToStdout()) {
+            // Keep stdout clean for the video; log lines go to stderr.
+            System.setOut(System.err);
+        }
+
+        Lwjgl3ApplicationConfiguration config = windowConfiguration(
             cliArguments.initialWindowWidth(),
             cliArguments.initialWindowHeight()
         );
-        config.setResizable(false);
-        config.setDecorated(false);
-        config.setInitialVisible(false);
-        config.disableAudio(true);
 
-        App app = new App(cliArguments);
+        App app = new App(jobs, batchMode);
         logInfo(
-            "Starting preview generation for atlas " + cliArguments.atlasPath()
+            batchMode
+                ? "Starting batch preview generation for " + jobs.size() + " job(s)"
+                : "Starting preview generation for atlas " + cliArguments.atlasPath()
         );
         try {
-            new Lwjgl3Application(app, config);
+            if (
+                cliArguments.rendererBackend() ==
+                CliArguments.RendererBackend.SOFTWARE
+            ) {
+                new HeadlessApplication(
+                    app,
+                    new HeadlessApplicationConfiguration()
+                );
+                app.awaitShutdown();
+                if (app.failure() != null) {
+                    throw app.failure();
+                }
+            } else {
+                new Lwjgl3Application(app, config);
+            }
         } catch (Throwable ex) {
             logError("Preview generation failed: " + ex.getMessage(), ex);
             return;
@@ -538,10 +892,36 @@ public class App extends ApplicationAdapter {
         }
     }
 
+    /** Hidden, unthrottled window that only hosts the GL context. */
+    static Lwjgl3ApplicationConfiguration windowConfiguration(
+        int width,
+        int height
+    ) {
+        Lwjgl3ApplicationConfiguration config =
+            new Lwjgl3ApplicationConfiguration();
+        config.setTitle("Spine Preview Generator");
+        config.useVsync(false);
+        config.setForegroundFPS(0);
+        config.setIdleFPS(0);
+        config.setWindowedMode(width, height);
+        config.setResizable(false);
+        config.setDecorated(false);
+        config.setInitialVisible(false);
+        config.disableAudio(true);
+        return config;
+    }
+
     public static final class CliArguments {
 
         private static final int DEFAULT_WINDOW_SIZE = 128;
+        private static final int DEFAULT_LEASE_SECONDS = 300;
         private static final int DEFAULT_MIN_OUTPUT_SIZE = 128;
+        private static final int DEFAULT_READBACK_BUFFERS = 3;
+        private static final int DEFAULT_PIPELINE_DEPTH = 8;
+        private static final int DEFAULT_PNG_LEVEL = 1;
+        private static final int DEFAULT_IMAGE_QUALITY = 80;
+        private static final int DEFAULT_BENCHMARK_FRAMES = 120;
+        private static final int DEFAULT_SHEET_MAX_SIZE = 4096;
 
         enum LoopMode {
             OFF,
@@ -549,6 +929,130 @@ public class App extends ApplicationAdapter {
             CYCLES,
         }
 
+        enum ReadbackMode {
+            SYNC,
+            PBO,
+        }
+
+        enum RendererBackend {
+            GL,
+            SOFTWARE,
+        }
+
+        enum ImageFormat {
+            PNG("png"),
+            WEBP("webp"),
+            AVIF("avif");
+
+            private final String extension;
+
+            ImageFormat(String extension) {
+                this.extension = extension;
+            }
+
+            String extension() {
+                return extension;
+            }
+
+            static ImageFormat parse(String value) {
+                String normalized = value.toLowerCase(Locale.ROOT).trim();
+                for (ImageFormat format : values()) {
+                    if (format.extension.equals(normalized)) {
+                        return format;
+                    }
+                }
+                throw new IllegalArgumentException(
+                    "--image-format expects 'png', 'webp', or 'avif'."
+                );
+            }
+
+            static ImageFormat fromPath(Path path) {
+                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                for (ImageFormat format : values()) {
+                    if (name.endsWith("." + format.extension)) {
+                        return format;
+                    }
+                }
+                return PNG;
+            }
+        }
+
+        enum AnimationFormat {
+            WEBP("webp"),
+            APNG("apng"),
+            GIF("gif");
+
+            private final String extension;
+
+            AnimationFormat(String extension) {
+                this.extension = extension;
+            }
+
+            String extension() {
+                return extension;
+            }
+
+            static AnimationFormat parse(String value) {
+                String normalized = value.toLowerCase(Locale.ROOT).trim();
+                for (AnimationFormat format : values()) {
+                    if (format.extension.equals(normalized)) {
+                        return format;
+                    }
+                }
+                throw new IllegalArgumentException(
+                    "--animated expects 'webp', 'apng', or 'gif'."
+                );
+            }
+
+            /** The animated format named by a video path, or {@code null} for a video container. */
+            static AnimationFormat fromPath(Path path) {
+                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                for (AnimationFormat format : values()) {
+                    if (name.endsWith("." + format.extension)) {
+                        return format;
+                    }
+                }
+                return null;
+            }
+        }
+
+        enum RawFormat {
+            RGBA("rgba"),
+            Y4M("y4m");
+
+            private final String extension;
+
+            RawFormat(String extension) {
+                this.extension = extension;
+            }
+
+            String extension() {
+                return extension;
+            }
+
+            static RawFormat parse(String value) {
+                String normalized = value.toLowerCase(Locale.ROOT).trim();
+                for (RawFormat format : values()) {
+                    if (format.extension.equals(normalized)) {
+                        return format;
+                    }
+                }
+                throw new IllegalArgumentException(
+                    "--raw-video expects 'rgba' or 'y4m'."
+                );
+            }
+
+            static RawFormat fromPath(Path path) {
+                String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+                for (RawFormat format : values()) {
+                    if (name.endsWith("." + format.extension)) {
+                        return format;
+                    }
+                }
+                return null;
+            }
+        }
+
         static final class HelpRequested extends RuntimeException {
 
             HelpRequested() {
@@ -579,6 +1083,41 @@ public class App extends ApplicationAdapter {
         private final Path framesDir;
         private final Path animationFile;
         private final Path folder;
+        private final ReadbackMode readbackMode;
+        private final int readbackBuffers;
+        private final RendererBackend rendererBackend;
+        private final int renderThreads;
+        private final boolean gpuYuv;
+        private final String pixelKernels;
+        private final int pipelineWorkers;
+        private final int pipelineDepth;
+        private final int videoSegments;
+        private final int pngLevel;
+        private final PngEncoder.Filter pngFilter;
+        private final int pngWriters;
+        private final int pngThreads;
+        private final ImageFormat imageFormat;
+        private final int imageQuality;
+        private final Integer imageSpeed;
+        private final boolean imageLossless;
+        private final EncoderProfile encoderProfile;
+        private final boolean benchmarkEncoders;
+        private final List<EncoderProfile> benchmarkProfiles;
+        private final int benchmarkFrames;
+        private final EncoderProfile intermediateProfile;
+        private final Path transcodeQueue;
+        private final boolean fragmentedMp4;
+        private final boolean videoToStdout;
+        private final AnimationFormat animationFormat;
+        private final boolean spriteSheet;
+        private final int sheetColumns;
+        private final int sheetMaxSize;
+        private final Path spoolPath;
+        private final RawFormat rawFormat;
+        private final int workers;
+        private final Path claimDir;
+        private final int leaseSeconds;
+        private final boolean incremental;
 
         private CliArguments(
             Path atlasPath,
@@ -603,7 +1142,42 @@ public class App extends ApplicationAdapter {
             boolean keepFrames,
             Path framesDir,
             Path animationFile,
-            Path folder
+            Path folder,
+            ReadbackMode readbackMode,
+            int readbackBuffers,
+            RendererBackend rendererBackend,
+            int renderThreads,
+            boolean gpuYuv,
+            String pixelKernels,
+            int pipelineWorkers,
+            int pipelineDepth,
+            int videoSegments,
+            int pngLevel,
+            PngEncoder.Filter pngFilter,
+            int pngWriters,
+            int pngThreads,
+            ImageFormat imageFormat,
+            int imageQuality,
+            Integer imageSpeed,
+            boolean imageLossless,
+            EncoderProfile encoderProfile,
+            boolean benchmarkEncoders,
+            List<EncoderProfile> benchmarkProfiles,
+            int benchmarkFrames,
+            EncoderProfile intermediateProfile,
+            Path transcodeQueue,
+            boolean fragmentedMp4,
+            boolean videoToStdout,
+            AnimationFormat animationFormat,
+            boolean spriteSheet,
+            int sheetColumns,
+            int sheetMaxSize,
+            Path spoolPath,
+            RawFormat rawFormat,
+            int workers,
+            Path claimDir,
+            int leaseSeconds,
+            boolean incremental
         ) {
             this.atlasPath = atlasPath;
             this.skeletonPath = skeletonPath;
@@ -628,6 +1202,41 @@ public class App extends ApplicationAdapter {
             this.framesDir = framesDir;
             this.animationFile = animationFile;
             this.folder = folder;
+            this.readbackMode = readbackMode;
+            this.readbackBuffers = readbackBuffers;
+            this.rendererBackend = rendererBackend;
+            this.renderThreads = renderThreads;
+            this.gpuYuv = gpuYuv;
+            this.pixelKernels = pixelKernels;
+            this.pipelineWorkers = pipelineWorkers;
+            this.pipelineDepth = pipelineDepth;
+            this.videoSegments = videoSegments;
+            this.pngLevel = pngLevel;
+            this.pngFilter = pngFilter;
+            this.pngWriters = pngWriters;
+            this.pngThreads = pngThreads;
+            this.imageFormat = imageFormat;
+            this.imageQuality = imageQuality;
+            this.imageSpeed = imageSpeed;
+            this.imageLossless = imageLossless;
+            this.encoderProfile = encoderProfile;
+            this.benchmarkEncoders = benchmarkEncoders;
+            this.benchmarkProfiles = benchmarkProfiles;
+            this.benchmarkFrames = benchmarkFrames;
+            this.intermediateProfile = intermediateProfile;
+            this.transcodeQueue = transcodeQueue;
+            this.fragmentedMp4 = fragmentedMp4;
+            this.videoToStdout = videoToStdout;
+            this.animationFormat = animationFormat;
+            this.spriteSheet = spriteSheet;
+            this.sheetColumns = sheetColumns;
+            this.sheetMaxSize = sheetMaxSize;
+            this.spoolPath = spoolPath;
+            this.rawFormat = rawFormat;
+            this.workers = workers;
+            this.claimDir = claimDir;
+            this.leaseSeconds = leaseSeconds;
+            this.incremental = incremental;
         }
 
         public static CliArguments parse(String[] args) {
@@ -653,6 +1262,49 @@ public class App extends ApplicationAdapter {
             boolean keepFrames = false;
             Path folder = null;
             Path animationFile = null;
+            ReadbackMode readbackMode = ReadbackMode.SYNC;
+            int readbackBuffers = DEFAULT_READBACK_BUFFERS;
+            RendererBackend rendererBackend = RendererBackend.GL;
+            int renderThreads = Runtime.getRuntime().availableProcessors();
+            boolean gpuYuv = false;
+            String pixelKernels = "auto";
+            int pipelineWorkers = Math.max(
+                1,
+                Math.min(4, Runtime.getRuntime().availableProcessors() - 1)
+            );
+            int pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+            int videoSegments = 1;
+            int pngLevel = DEFAULT_PNG_LEVEL;
+            PngEncoder.Filter pngFilter = PngEncoder.Filter.SUB;
+            int pngThreads = Runtime.getRuntime().availableProcessors();
+            ImageFormat imageFormat = null;
+            int imageQuality = DEFAULT_IMAGE_QUALITY;
+            Integer imageSpeed = null;
+            boolean imageLossless = false;
+            EncoderProfile encoderProfile = EncoderProfile.BALANCED;
+            boolean benchmarkEncoders = false;
+            List<EncoderProfile> benchmarkProfiles = Arrays.asList(
+                EncoderProfile.values()
+            );
+            int benchmarkFrames = DEFAULT_BENCHMARK_FRAMES;
+            EncoderProfile intermediateProfile = null;
+            Path transcodeQueue = null;
+            boolean fragmentedMp4 = false;
+            boolean videoToStdout = false;
+            AnimationFormat animationFormat = null;
+            boolean spriteSheet = false;
+            int sheetColumns = 0;
+            int sheetMaxSize = DEFAULT_SHEET_MAX_SIZE;
+            Path spoolPath = null;
+            RawFormat rawFormat = null;
+            int workers = 1;
+            Path claimDir = null;
+            int leaseSeconds = DEFAULT_LEASE_SECONDS;
+            boolean incremental = false;
+            int pngWriters = Math.max(
+                1,
+                Runtime.getRuntime().availableProcessors() / 2
+            );
 
             for (int i = 0; i < args.length; i++) {
                 String arg = args[i];
@@ -727,6 +1379,13 @@ public class App extends ApplicationAdapter {
                         break;
                     case "--video-output":
                         videoOutput = nextPath(args, ++i, arg);
+                        videoToStdout = "-".equals(videoOutput.toString());
+                        if (videoToStdout) {
+                            videoOutput = null;
+                        }
+                        break;
+                    case "--fragmented":
+                        fragmentedMp4 = true;
                         break;
                     case "--video-loop":
                         String loopValue = nextValue(args, ++i, arg)
@@ -758,11 +1417,268 @@ public class App extends ApplicationAdapter {
                     case "--keep-frames":
                         keepFrames = true;
                         break;
-                    case "--folder":
-                        folder = nextPath(args, ++i, arg);
+                    case "--sprite-sheet":
+                        spriteSheet = true;
+                        keepFrames = true;
                         break;
-                    default:
-                        throw new IllegalArgumentException(
+                    case "--workers":
+                        workers = Integer.parseInt(nextValue(args, ++i, arg));
+                        if (workers <= 0) {
+                            throw new IllegalArgumentException(
+                                "--workers expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--claim-dir":
+                        claimDir = nextPath(args, ++i, arg)
+                            .toAbsolutePath()
+                            .normalize();
+                        break;
+                    case "--lease-seconds":
+                        leaseSeconds = Integer.parseInt(nextValue(args, ++i, arg));
+                        if (leaseSeconds <= 0) {
+                            throw new IllegalArgumentException(
+                                "--lease-seconds expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--incremental":
+                        incremental = true;
+                        break;
+                    case "--raw-video":
+                        rawFormat = RawFormat.parse(nextValue(args, ++i, arg));
+                        break;
+                    case "--spool":
+                        spoolPath = nextPath(args, ++i, arg)
+                            .toAbsolutePath()
+                            .normalize();
+                        break;
+                    case "--sheet-columns":
+                        sheetColumns = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (sheetColumns <= 0) {
+                            throw new IllegalArgumentException(
+                                "--sheet-columns expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--sheet-max-size":
+                        sheetMaxSize = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (sheetMaxSize <= 0) {
+                            throw new IllegalArgumentException(
+                                "--sheet-max-size expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--folder":
+                        folder = nextPath(args, ++i, arg);
+                        break;
+                    case "--readback":
+                        String readbackValue = nextValue(args, ++i, arg)
+                            .toLowerCase(Locale.ROOT)
+                            .trim();
+                        if ("sync".equals(readbackValue)) {
+                            readbackMode = ReadbackMode.SYNC;
+                        } else if ("pbo".equals(readbackValue)) {
+                            readbackMode = ReadbackMode.PBO;
+                        } else {
+                            throw new IllegalArgumentException(
+                                "--readback expects 'sync' or 'pbo'."
+                            );
+                        }
+                        break;
+                    case "--readback-buffers":
+                        readbackBuffers = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (readbackBuffers < 2) {
+                            throw new IllegalArgumentException(
+                                "--readback-buffers expects a value of at least 2."
+                            );
+                        }
+                        break;
+                    case "--gpu-yuv":
+                        gpuYuv = true;
+                        break;
+                    case "--pixel-kernels":
+                        pixelKernels = nextValue(args, ++i, arg)
+                            .toLowerCase(Locale.ROOT)
+                            .trim();
+                        if (
+                            !"auto".equals(pixelKernels) &&
+                            !"scalar".equals(pixelKernels) &&
+                            !"vector".equals(pixelKernels)
+                        ) {
+                            throw new IllegalArgumentException(
+                                "--pixel-kernels expects 'auto', 'scalar', or 'vector'."
+                            );
+                        }
+                        break;
+                    case "--pipeline-workers":
+                        pipelineWorkers = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (pipelineWorkers < 0) {
+                            throw new IllegalArgumentException(
+                                "--pipeline-workers expects zero or a positive integer."
+                            );
+                        }
+                        break;
+                    case "--pipeline-depth":
+                        pipelineDepth = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (pipelineDepth <= 0) {
+                            throw new IllegalArgumentException(
+                                "--pipeline-depth expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--png-level":
+                        pngLevel = Integer.parseInt(nextValue(args, ++i, arg));
+                        if (pngLevel < 0 || pngLevel > 9) {
+                            throw new IllegalArgumentException(
+                                "--png-level expects a value between 0 and 9."
+                            );
+                        }
+                        break;
+                    case "--png-filter":
+                        pngFilter = PngEncoder.Filter.parse(
+                            nextValue(args, ++i, arg)
+                        );
+                        break;
+                    case "--png-writers":
+                        pngWriters = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (pngWriters <= 0) {
+                            throw new IllegalArgumentException(
+                                "--png-writers expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--image-format":
+                        imageFormat = ImageFormat.parse(nextValue(args, ++i, arg));
+                        break;
+                    case "--image-quality":
+                        imageQuality = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (imageQuality < 0 || imageQuality > 100) {
+                            throw new IllegalArgumentException(
+                                "--image-quality expects a value between 0 and 100."
+                            );
+                        }
+                        break;
+                    case "--image-speed":
+                        imageSpeed = Integer.parseInt(nextValue(args, ++i, arg));
+                        if (imageSpeed < 0) {
+                            throw new IllegalArgumentException(
+                                "--image-speed expects zero or a positive integer."
+                            );
+                        }
+                        break;
+                    case "--lossless":
+                        imageLossless = true;
+                        break;
+                    case "--encoder-profile":
+                        encoderProfile = EncoderProfile.parse(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (encoderProfile.isIntermediate()) {
+                            throw new IllegalArgumentException(
+                                "'" + encoderProfile.id() + "' is a lossless capture profile; " +
+                                    "use --intermediate " + encoderProfile.id() + " instead of --encoder-profile."
+                            );
+                        }
+                        break;
+                    case "--animated":
+                        animationFormat = AnimationFormat.parse(
+                            nextValue(args, ++i, arg)
+                        );
+                        break;
+                    case "--intermediate":
+                        intermediateProfile = EncoderProfile.parse(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (!intermediateProfile.isIntermediate()) {
+                            throw new IllegalArgumentException(
+                                "--intermediate expects 'ffv1' or 'x264-lossless'."
+                            );
+                        }
+                        break;
+                    case "--transcode-queue":
+                        transcodeQueue = nextPath(args, ++i, arg)
+                            .toAbsolutePath()
+                            .normalize();
+                        break;
+                    case "--benchmark-encoders":
+                        benchmarkEncoders = true;
+                        break;
+                    case "--benchmark-profiles":
+                        benchmarkProfiles = EncoderProfile.parseList(
+                            nextValue(args, ++i, arg)
+                        );
+                        break;
+                    case "--benchmark-frames":
+                        benchmarkFrames = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (benchmarkFrames <= 0) {
+                            throw new IllegalArgumentException(
+                                "--benchmark-frames expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--png-threads":
+                        pngThreads = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (pngThreads <= 0) {
+                            throw new IllegalArgumentException(
+                                "--png-threads expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--video-segments":
+                        videoSegments = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (videoSegments <= 0) {
+                            throw new IllegalArgumentException(
+                                "--video-segments expects a positive integer."
+                            );
+                        }
+                        break;
+                    case "--renderer":
+                        String rendererValue = nextValue(args, ++i, arg)
+                            .toLowerCase(Locale.ROOT)
+                            .trim();
+                        if ("gl".equals(rendererValue)) {
+                            rendererBackend = RendererBackend.GL;
+                        } else if ("software".equals(rendererValue)) {
+                            rendererBackend = RendererBackend.SOFTWARE;
+                        } else {
+                            throw new IllegalArgumentException(
+                                "--renderer expects 'gl' or 'software'."
+                            );
+                        }
+                        break;
+                    case "--render-threads":
+                        renderThreads = Integer.parseInt(
+                            nextValue(args, ++i, arg)
+                        );
+                        if (renderThreads <= 0) {
+                            throw new IllegalArgumentException(
+                                "--render-threads expects a positive integer."
+                            );
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException(
                             "Unknown argument: " + arg
                         );
                 }
@@ -856,9 +1772,21 @@ public class App extends ApplicationAdapter {
             }
 
             if (output == null) {
-                output = defaultOutputPath(atlas);
+                if (imageFormat == null) {
+                    imageFormat = ImageFormat.PNG;
+                }
+                output = defaultOutputPath(atlas, imageFormat);
             } else {
                 output = output.toAbsolutePath().normalize();
+                if (imageFormat == null) {
+                    imageFormat = ImageFormat.fromPath(output);
+                }
+            }
+
+            if (transcodeQueue != null && intermediateProfile == null) {
+                throw new IllegalArgumentException(
+                    "--transcode-queue schedules the delivery encode of an intermediate; give --intermediate ffv1|x264-lossless."
+                );
             }
 
             videoSeconds = Math.max(0f, videoSeconds);
@@ -868,10 +1796,59 @@ public class App extends ApplicationAdapter {
                 .toAbsolutePath()
                 .normalize();
 
-            if (videoOutput == null) {
-                videoOutput = defaultVideoPath(output);
+            if (rawFormat == null && videoOutput != null) {
+                rawFormat = RawFormat.fromPath(videoOutput);
+            }
+            if (animationFormat == null && rawFormat == null && videoOutput != null) {
+                animationFormat = AnimationFormat.fromPath(videoOutput);
+            }
+            if (rawFormat != null) {
+                if (animationFormat != null || intermediateProfile != null) {
+                    throw new IllegalArgumentException(
+                        "--raw-video cannot be combined with --animated or --intermediate."
+                    );
+                }
+                if (videoOutput == null && !videoToStdout) {
+                    videoOutput = defaultVideoPath(output, rawFormat.extension());
+                }
+                if (videoOutput != null) {
+                    videoOutput = videoOutput.toAbsolutePath().normalize();
+                }
+            } else if (animationFormat != null) {
+                if (videoToStdout || intermediateProfile != null) {
+                    throw new IllegalArgumentException(
+                        "Animated image output needs a file and cannot be combined with --intermediate or --video-output -."
+                    );
+                }
+                if (videoOutput == null) {
+                    videoOutput = defaultVideoPath(
+                        output,
+                        animationFormat.extension()
+                    );
+                    if (videoOutput.equals(output)) {
+                        // An animated WebP next to a WebP still.
+                        videoOutput = defaultVideoPath(
+                            output,
+                            "anim." + animationFormat.extension()
+                        );
+                    }
+                }
+                videoOutput = videoOutput.toAbsolutePath().normalize();
+            } else if (videoToStdout) {
+                if (intermediateProfile != null) {
+                    throw new IllegalArgumentException(
+                        "--intermediate cannot be combined with --video-output -."
+                    );
+                }
+            } else {
+                if (videoOutput == null) {
+                    videoOutput = defaultVideoPath(
+                        output,
+                        encoderProfile.extension()
+                    );
+                }
+                videoOutput = videoOutput.toAbsolutePath().normalize();
             }
-            videoOutput = videoOutput.toAbsolutePath().normalize();
 
             return new CliArguments(
                 atlas,
@@ -896,7 +1873,42 @@ public class App extends ApplicationAdapter {
                 keepFrames,
                 normalizedFramesDir,
                 animationFile,
-                folder
+                folder,
+                readbackMode,
+                readbackBuffers,
+                rendererBackend,
+                renderThreads,
+                gpuYuv,
+                pixelKernels,
+                pipelineWorkers,
+                pipelineDepth,
+                videoSegments,
+                pngLevel,
+                pngFilter,
+                pngWriters,
+                pngThreads,
+                imageFormat,
+                imageQuality,
+                imageSpeed,
+                imageLossless,
+                encoderProfile,
+                benchmarkEncoders,
+                benchmarkProfiles,
+                benchmarkFrames,
+                intermediateProfile,
+                transcodeQueue,
+                fragmentedMp4,
+                videoToStdout,
+                animationFormat,
+                spriteSheet,
+                sheetColumns,
+                sheetMaxSize,
+                spoolPath,
+                rawFormat,
+                workers,
+                claimDir,
+                leaseSeconds,
+                incremental
             );
         }
 
@@ -948,7 +1960,7 @@ public class App extends ApplicationAdapter {
             return absolute;
         }
 
-        private static Path defaultOutputPath(Path atlas) {
+        private static Path defaultOutputPath(Path atlas, ImageFormat format) {
             String fileName = atlas.getFileName().toString();
             int lastDot = fileName.lastIndexOf('.');
             String stem = lastDot >= 0
@@ -959,12 +1971,12 @@ public class App extends ApplicationAdapter {
                 parent = Paths.get(".");
             }
             return parent
-                .resolve(stem + "-preview.png")
+                .resolve(stem + "-preview." + format.extension())
                 .toAbsolutePath()
                 .normalize();
         }
 
-        private static Path defaultVideoPath(Path output) {
+        private static Path defaultVideoPath(Path output, String extension) {
             String fileName = output.getFileName().toString();
             int lastDot = fileName.lastIndexOf('.');
             String stem = lastDot >= 0
@@ -974,7 +1986,10 @@ public class App extends ApplicationAdapter {
             if (parent == null) {
                 parent = Paths.get(".");
             }
-            return parent.resolve(stem + ".mp4").toAbsolutePath().normalize();
+            return parent
+                .resolve(stem + "." + extension)
+                .toAbsolutePath()
+                .normalize();
         }
 
         private static Path defaultFramesDir(Path output) {
@@ -1063,6 +2078,21 @@ public class App extends ApplicationAdapter {
             out.println(
                 "  --folder PATH             Scan PATH for the first .atlas, .skel/.json, and texture PNG."
             );
+            out.println(
+                "  --batch DIR|GLOB          Render every matching mod folder in one run (repeatable; repeated --folder does the same)."
+            );
+            out.println(
+                "  --workers N               Render batch jobs on N threads, each with its own GL context (default 1)."
+            );
+            out.println(
+                "  --claim-dir DIR           Share a batch with other processes by claiming folders through lease files in DIR."
+            );
+            out.println(
+                "  --lease-seconds S         Time after which an unrenewed claim is taken over (default 300)."
+            );
+            out.println(
+                "  --incremental             Skip jobs whose inputs, options and tool version match the outputs' .fingerprint manifest."
+            );
             out.println(
                 "  --atlas, -a PATH          Spine atlas file (.atlas). Required without --folder."
             );
@@ -1103,6 +2133,32 @@ public class App extends ApplicationAdapter {
                 "  --time SECONDS            Advance the animation by SECONDS before rendering."
             );
             out.println();
+            out.println("Renderer:");
+            out.println(
+                "  --renderer MODE           'gl' (default, hidden LWJGL window) or 'software' (CPU, no GL)."
+            );
+            out.println(
+                "  --render-threads N        Worker threads for the software renderer (default: CPU count)."
+            );
+            out.println(
+                "  --png-threads N           Threads compressing the preview PNG in parallel blocks (default: CPU count)."
+            );
+            out.println(
+                "  --image-format FORMAT     Preview format: 'png', 'webp', or 'avif' (default: from --output, else png)."
+            );
+            out.println(
+                "                            AVIF has no alpha plane; transparent areas come out opaque."
+            );
+            out.println(
+                "  --image-quality Q         WebP/AVIF quality 0-100 (default: 80)."
+            );
+            out.println(
+                "  --image-speed N           WebP 0-6 / AVIF 0-8, higher is faster (default: 2 / 6)."
+            );
+            out.println(
+                "  --lossless                Encode WebP/AVIF previews losslessly (AVIF as RGB, alpha still dropped)."
+            );
+            out.println();
             out.println("Preview window:");
             out.println(
                 "  --window-width PX         Hidden window width used while rendering (default: 128)."
@@ -1119,7 +2175,16 @@ public class App extends ApplicationAdapter {
                 "  --fps VALUE               Frames per second for the video (default: 30)."
             );
             out.println(
-                "  --video-output PATH       MP4 output path (default: derived from --output)."
+                "  --video-output PATH       Video output path, or '-' to stream to stdout (default: derived from --output and the profile)."
+            );
+            out.println(
+                "  --fragmented              Write fragmented MP4 that is playable while it is written (no faststart pass)."
+            );
+            out.println(
+                "  --raw-video FORMAT        Stream uncompressed 'rgba' or 'y4m' frames to --video-output (a file, pipe or '-')."
+            );
+            out.println(
+                "  --animated FORMAT         Write an animated 'webp', 'apng' or 'gif' instead of a video (default: from --video-output)."
             );
             out.println(
                 "  --video-loop MODE         Loop behaviour: 'auto', 'off', or number of cycles."
@@ -1127,11 +2192,95 @@ public class App extends ApplicationAdapter {
             out.println(
                 "  --keep-frames             Keep the intermediate PNG frames on disk."
             );
+            out.println(
+                "  --sprite-sheet            Keep frames as grid sprite sheets with a JSON index instead of one PNG each."
+            );
+            out.println(
+                "  --sheet-columns N         Frames per sheet row (default: as many as fit in --sheet-max-size)."
+            );
+            out.println(
+                "  --sheet-max-size PX       Maximum sheet width and height before splitting (default: 4096)."
+            );
+            out.println(
+                "  --spool FILE              Also write raw RGBA frames to a memory-mapped spool for re-encoding."
+            );
+            out.println(
+                "  --png-level N             Deflate level 0-9 for kept frames; 0 stores, 1 is fastest (default: 1)."
+            );
+            out.println(
+                "  --png-filter MODE         none, sub (default), up, average, paeth, or adaptive."
+            );
+            out.println(
+                "  --png-writers N           Background threads writing kept frames (default: CPU count / 2)."
+            );
+            out.println(
+                "  --video-segments N        Encode N timeline segments concurrently, then join them (default: 1)."
+            );
+            out.println(
+                "  --encoder-profile NAME    draft, balanced (default), archival, vp9 (WebM), or av1."
+            );
+            out.println(
+                "  --intermediate CODEC      Capture to a lossless 'ffv1' or 'x264-lossless' MKV instead of encoding."
+            );
+            out.println(
+                "  --transcode-queue DIR     Queue the delivery encode of the intermediate for --transcode-worker."
+            );
+            out.println(
+                "  --benchmark-encoders      Encode the same frames with each profile and report fps, size, PSNR and SSIM."
+            );
+            out.println(
+                "  --benchmark-profiles LIST Comma-separated profiles to benchmark (default: all)."
+            );
+            out.println(
+                "  --benchmark-frames N      Frames rendered for the encoder benchmark (default: 120)."
+            );
+            out.println(
+                "  --readback MODE           Framebuffer readback: 'sync' (default) or 'pbo' (asynchronous)."
+            );
+            out.println(
+                "  --readback-buffers N      Number of pixel buffers in the 'pbo' ring (default: 3)."
+            );
+            out.println(
+                "  --gpu-yuv                 Convert frames to YUV420P in a shader before readback."
+            );
+            out.println(
+                "  --pixel-kernels MODE      CPU pixel kernels: 'auto' (default), 'scalar', or 'vector'."
+            );
+            out.println(
+                "  --pipeline-workers N      Threads converting/writing frames off the render thread (0 = inline)."
+            );
+            out.println(
+                "  --pipeline-depth N        Frames allowed in flight between render and encode (default: 8)."
+            );
             out.println();
             out.println("General:");
             out.println(
                 "  --help, -h                Show this help message and exit."
             );
+            out.println(
+                "  --benchmark-kernels [--width PX --height PX --iterations N]"
+            );
+            out.println(
+                "                            Must be the first argument. Report scalar vs vector kernel MB/s and exit."
+            );
+            out.println(
+                "  --transcode-worker --queue DIR [--concurrency N] [--poll-seconds S] [--lease-seconds S] [--once]"
+            );
+            out.println(
+                "                            Must be the first argument. Run queued delivery encodes without GL."
+            );
+            out.println(
+                "  --reencode-spool FILE [--video-output PATH] [--encoder-profile NAME] [--fps N] [--fragmented]"
+            );
+            out.println(
+                "                            Must be the first argument. Encode a frame spool without rendering."
+            );
+            out.println(
+                "  --serve [--port N] [--bind ADDR] [--token-file FILE] [--renderer gl|software] [--queue-size N] [--job-timeout S]"
+            );
+            out.println(
+                "                            Must be the first argument. Keep the renderer warm and take jobs over HTTP."
+            );
             out.println();
             out.println(
                 "All paths are resolved relative to the current working directory."
@@ -1233,6 +2382,156 @@ public class App extends ApplicationAdapter {
         public Path folder() {
             return folder;
         }
+
+        public ReadbackMode readbackMode() {
+            return readbackMode;
+        }
+
+        public int readbackBuffers() {
+            return readbackBuffers;
+        }
+
+        public RendererBackend rendererBackend() {
+            return rendererBackend;
+        }
+
+        public int renderThreads() {
+            return renderThreads;
+        }
+
+        public boolean gpuYuv() {
+            return gpuYuv;
+        }
+
+        public String pixelKernels() {
+            return pixelKernels;
+        }
+
+        public int pipelineWorkers() {
+            return pipelineWorkers;
+        }
+
+        public int pipelineDepth() {
+            return pipelineDepth;
+        }
+
+        public int videoSegments() {
+            return videoSegments;
+        }
+
+        public int pngLevel() {
+            return pngLevel;
+        }
+
+        public PngEncoder.Filter pngFilter() {
+            return pngFilter;
+        }
+
+        public int pngWriters() {
+            return pngWriters;
+        }
+
+        public int pngThreads() {
+            return pngThreads;
+        }
+
+        public ImageFormat imageFormat() {
+            return imageFormat;
+        }
+
+        public int imageQuality() {
+            return imageQuality;
+        }
+
+        /** Encoder speed preset, or {@code null} for the format's default. */
+        public Integer imageSpeed() {
+            return imageSpeed;
+        }
+
+        public boolean imageLossless() {
+            return imageLossless;
+        }
+
+        public EncoderProfile encoderProfile() {
+            return encoderProfile;
+        }
+
+        public boolean benchmarkEncoders() {
+            return benchmarkEncoders;
+        }
+
+        public List<EncoderProfile> benchmarkProfiles() {
+            return benchmarkProfiles;
+        }
+
+        public int benchmarkFrames() {
+            return benchmarkFrames;
+        }
+
+        /** Lossless capture profile, or {@code null} to encode directly. */
+        public EncoderProfile intermediateProfile() {
+            return intermediateProfile;
+        }
+
+        public Path transcodeQueue() {
+            return transcodeQueue;
+        }
+
+        public boolean fragmentedMp4() {
+            return fragmentedMp4;
+        }
+
+        /** {@code --video-output -}: stream the video to stdout. */
+        public boolean videoToStdout() {
+            return videoToStdout;
+        }
+
+        /** Animated image written instead of a video, or {@code null}. */
+        public AnimationFormat animationFormat() {
+            return animationFormat;
+        }
+
+        public boolean spriteSheet() {
+            return spriteSheet;
+        }
+
+        /** Sheet columns, or 0 to fit as many as {@link #sheetMaxSize()} allows. */
+        public int sheetColumns() {
+            return sheetColumns;
+        }
+
+        public int sheetMaxSize() {
+            return sheetMaxSize;
+        }
+
+        /** Raw frame spool written alongside the video, or {@code null}. */
+        public Path spoolPath() {
+            return spoolPath;
+        }
+
+        /** Uncompressed stream written instead of a video, or {@code null}. */
+        public RawFormat rawFormat() {
+            return rawFormat;
+        }
+
+        /** Batch jobs rendered in parallel, each worker with its own context. */
+        public int workers() {
+            return workers;
+        }
+
+        /** Lease directory shared by cooperating batch processes, or {@code null}. */
+        public Path claimDir() {
+            return claimDir;
+        }
+
+        public int leaseSeconds() {
+            return leaseSeconds;
+        }
+
+        /** Skip jobs whose recorded build fingerprint still matches. */
+        public boolean incremental() {
+            return incremental;
+        }
     }
 
     private static final class GeometryBounds {
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Expands a batch command line into one {@link App.CliArguments} per mod
+ * folder, so every job runs in the same JVM and graphics context. Folders
+ * come from repeated {@code --folder} options and from {@code --batch}
+ * values, each a directory or a glob such as {@code mods/*} or
+ * {@code mods/**}; glob matches are kept only if they hold an atlas. All
+ * other options apply to every job.
+ */
+final class BatchJobs {
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private BatchJobs() {}
+
+    static boolean isBatch(String[] args) {
+        int folders = 0;
+        for (String arg : args) {
+            if ("--batch".equals(arg) || "--claim-dir".equals(arg)) {
+                return true;
+            }
+            if ("--folder".equals(arg)) {
+                folders++;
+            }
+        }
+        return folders > 1;
+    }
+
+    static List<App.CliArguments> parse(String[] args) {
+        List<String> shared = new ArrayList<>();
+        Set<Path> folders = new LinkedHashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--help":
+                case "-h":
+                    throw new App.CliArguments.HelpRequested();
+                case "--batch":
+                    folders.addAll(expand(value(args, ++i, arg)));
+                    break;
+                case "--folder":
+                    folders.add(Paths.get(value(args, ++i, arg)).toAbsolutePath().normalize());
+                    break;
+                case "--atlas":
+                case "-a":
+                case "--skeleton":
+                case "--skel":
+                case "-s":
+                case "--texture":
+                case "--png":
+                case "-t":
+                case "--output":
+                case "-o":
+                case "--video-output":
+                case "--spool":
+                    throw new IllegalArgumentException(
+                        "Batch jobs take their assets from each folder and write next to them; remove " +
+                            arg + "."
+                    );
+                default:
+                    shared.add(arg);
+                    break;
+            }
+        }
+        if (folders.isEmpty()) {
+            throw new IllegalArgumentException("--batch matched no folders.");
+        }
+
+        List<App.CliArguments> jobs = new ArrayList<>();
+        for (Path folder : folders) {
+            List<String> jobArgs = new ArrayList<>(shared);
+            jobArgs.add("--folder");
+            jobArgs.add(folder.toString());
+            try {
+                jobs.add(App.CliArguments.parse(jobArgs.toArray(new String[0])));
+            } catch (IllegalArgumentException ex) {
+                App.logWarn("Skipping " + folder + ": " + ex.getMessage());
+            }
+        }
+        if (jobs.isEmpty()) {
+            throw new IllegalArgumentException("No batch folder could be prepared.");
+        }
+        App.logInfo(
+            "Batch of " + jobs.size() + " job(s) from " + folders.size() + " folder(s)."
+        );
+        return jobs;
+    }
+
+    private static List<Path> expand(String pattern) {
+        int glob = firstGlobChar(pattern);
+        if (glob < 0) {
+            Path folder = Paths.get(pattern).toAbsolutePath().normalize();
+            if (!Files.isDirectory(folder)) {
+                throw new IllegalArgumentException("--batch folder not found: " + folder);
+            }
+            return Collections.singletonList(folder);
+        }
+
+        int cut = Math.max(
+            pattern.lastIndexOf('/', glob),
+            pattern.lastIndexOf('\\', glob)
+        );
+        Path base = Paths.get(cut < 0 ? "." : pattern.substring(0, cut + 1))
+            .toAbsolutePath()
+            .normalize();
+        String relative = pattern.substring(cut + 1).replaceAll("[/\\\\]+$", "");
+        int depth = relative.contains("**")
+            ? Integer.MAX_VALUE
+            : relative.split("[/\\\\]").length;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + relative);
+        if (!Files.isDirectory(base)) {
+            throw new IllegalArgumentException("--batch folder not found: " + base);
+        }
+        try (Stream<Path> paths = Files.walk(base, depth)) {
+            return paths
+                .filter(Files::isDirectory)
+                .filter(path -> !path.equals(base))
+                .filter(path -> matcher.matches(base.relativize(path)))
+                .filter(BatchJobs::containsAtlas)
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(
+                "Unable to expand --batch " + pattern + ": " + ex.getMessage()
+            );
+        }
+    }
+
+    private static boolean containsAtlas(Path folder) {
+        try (Stream<Path> entries = Files.list(folder)) {
+            return entries.anyMatch(path ->
+                path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".atlas")
+            );
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static int firstGlobChar(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (GLOB_CHARS.indexOf(pattern.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String value(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Expected a value after " + flag);
+        }
+        return args[index];
+    }
+}
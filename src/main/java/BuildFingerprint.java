@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Content fingerprint of everything a preview is built from: the atlas,
+ * skeleton, animation file and every texture page, the resolved options and
+ * the tool version. It is stored in a sidecar manifest next to the primary
+ * output ({@code <output>.fingerprint}); with {@code --incremental} a job
+ * whose manifest matches and whose outputs all exist is skipped before any
+ * GL or FFmpeg initialization.
+ *
+ * <p>Files are hashed by name and content, and path options by file name
+ * only, so moving a library keeps its manifests valid. Options that only
+ * change speed (threads, workers, buffers, kernels, claims) are left out.
+ */
+final class BuildFingerprint {
+
+    private static final String MANIFEST_SUFFIX = ".fingerprint";
+    private static final String VERSION_RESOURCE = "/create_preview.properties";
+    private static final Set<String> THROUGHPUT_OPTIONS = new HashSet<>(
+        Arrays.asList(
+            "initialWindowWidth",
+            "initialWindowHeight",
+            "readbackMode",
+            "readbackBuffers",
+            "renderThreads",
+            "pixelKernels",
+            "pipelineWorkers",
+            "pipelineDepth",
+            "pngWriters",
+            "pngThreads",
+            "transcodeQueue",
+            "workers",
+            "claimDir",
+            "leaseSeconds",
+            "incremental"
+        )
+    );
+    private static final String TOOL_VERSION = loadToolVersion();
+    // Fingerprints that isUpToDate computed for jobs it found outdated, kept
+    // with the job (arguments compare by identity) so the render records
+    // them without hashing every input again.
+    private static final Map<App.CliArguments, String> COMPUTED =
+        Collections.synchronizedMap(new WeakHashMap<>());
+
+    private BuildFingerprint() {}
+
+    /**
+     * Drops the jobs whose outputs are up to date, logging each skipped job.
+     * Jobs without a file output (streaming, benchmarks) are always kept.
+     */
+    static List<App.CliArguments> outdated(List<App.CliArguments> jobs) {
+        List<App.CliArguments> remaining = new ArrayList<>();
+        for (App.CliArguments job : jobs) {
+            if (!isUpToDate(job)) {
+                remaining.add(job);
+            }
+        }
+        if (remaining.size() < jobs.size()) {
+            App.logInfo(
+                (jobs.size() - remaining.size()) + " of " + jobs.size() +
+                    " job(s) up to date; skipped."
+            );
+        }
+        return remaining;
+    }
+
+    static boolean isUpToDate(App.CliArguments arguments) {
+        if (!isCacheable(arguments)) {
+            return false;
+        }
+        Path manifest = manifestPath(arguments);
+        Properties recorded = new Properties();
+        try (InputStream in = Files.newInputStream(manifest)) {
+            recorded.load(in);
+        } catch (NoSuchFileException ex) {
+            return false;
+        } catch (IOException ex) {
+            App.logWarn("Unable to read " + manifest + ": " + ex.getMessage());
+            return false;
+        }
+        for (Path output : outputs(arguments)) {
+            if (!Files.exists(output)) {
+                return false;
+            }
+        }
+        String fingerprint;
+        try {
+            fingerprint = compute(arguments);
+        } catch (IOException ex) {
+            App.logWarn("Unable to fingerprint " + arguments.atlasPath() + ": " + ex.getMessage());
+            return false;
+        }
+        if (!fingerprint.equals(recorded.getProperty("fingerprint"))) {
+            COMPUTED.put(arguments, fingerprint);
+            return false;
+        }
+        App.logInfo("Up to date: " + primaryOutput(arguments));
+        return true;
+    }
+
+    /** Writes the manifest for a job whose outputs were just produced. */
+    static void record(App.CliArguments arguments, String fingerprint) {
+        if (!isCacheable(arguments)) {
+            return;
+        }
+        Path manifest = manifestPath(arguments);
+        Properties properties = new Properties();
+        properties.setProperty("fingerprint", fingerprint);
+        properties.setProperty("toolVersion", TOOL_VERSION);
+        properties.setProperty("atlas", arguments.atlasPath().toString());
+        List<Path> outputs = outputs(arguments);
+        for (int i = 0; i < outputs.size(); i++) {
+            properties.setProperty("output." + i, outputs.get(i).toString());
+        }
+        Path temp = manifest.resolveSibling("." + manifest.getFileName() + ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "create_preview build fingerprint");
+            }
+            Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            App.logWarn("Unable to write " + manifest + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the job's fingerprint, reusing the one {@link #isUpToDate}
+     * computed for it if there is one.
+     */
+    static String forJob(App.CliArguments arguments) throws IOException {
+        String fingerprint = COMPUTED.remove(arguments);
+        return fingerprint != null ? fingerprint : compute(arguments);
+    }
+
+    private static String compute(App.CliArguments arguments) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, "create_preview " + TOOL_VERSION);
+        hashFile(digest, "atlas", arguments.atlasPath());
+        hashFile(digest, "skeleton", arguments.skeletonPath());
+        if (arguments.animationFile() != null) {
+            hashFile(digest, "animation", arguments.animationFile());
+        }
+        for (String page : atlasPages(arguments.atlasPath())) {
+            hashFile(digest, "page", arguments.textureDirectory().resolve(page));
+        }
+        update(digest, describe(arguments));
+        return hex(digest.digest());
+    }
+
+    private static boolean isCacheable(App.CliArguments arguments) {
+        return !arguments.videoToStdout() && !arguments.benchmarkEncoders();
+    }
+
+    private static Path primaryOutput(App.CliArguments arguments) {
+        return outputs(arguments).get(0);
+    }
+
+    private static Path manifestPath(App.CliArguments arguments) {
+        Path primary = primaryOutput(arguments);
+        return primary.resolveSibling(primary.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    private static List<Path> outputs(App.CliArguments arguments) {
+        Set<Path> outputs = new LinkedHashSet<>();
+        if (arguments.shouldRenderVideo() && arguments.videoOutput() != null) {
+            outputs.add(arguments.videoOutput());
+        }
+        outputs.add(arguments.outputPath());
+        if (arguments.spoolPath() != null) {
+            outputs.add(arguments.spoolPath());
+        }
+        if (arguments.keepFrames()) {
+            outputs.add(arguments.framesDir());
+        }
+        return new ArrayList<>(outputs);
+    }
+
+    // Pages are the first line of each block in the atlas (blocks are
+    // separated by blank lines); region entries follow within the block.
+    private static List<String> atlasPages(Path atlas) throws IOException {
+        List<String> pages = new ArrayList<>();
+        boolean blockStart = true;
+        for (String line : Files.readAllLines(atlas, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                blockStart = true;
+            } else if (blockStart) {
+                pages.add(trimmed);
+                blockStart = false;
+            }
+        }
+        return pages;
+    }
+
+    // Every option that can change the output, as sorted name=value lines.
+    private static String describe(App.CliArguments arguments) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : App.CliArguments.class.getDeclaredFields()) {
+            if (
+                !Modifier.isStatic(field.getModifiers()) &&
+                !THROUGHPUT_OPTIONS.contains(field.getName())
+            ) {
+                fields.add(field);
+            }
+        }
+        fields.sort(Comparator.comparing(Field::getName));
+        StringBuilder description = new StringBuilder();
+        for (Field field : fields) {
+            Object value;
+            try {
+                field.setAccessible(true);
+                value = field.get(arguments);
+            } catch (IllegalAccessException | RuntimeException ex) {
+                throw new IllegalStateException("Unable to read option " + field.getName(), ex);
+            }
+            if (value instanceof Path) {
+                Path name = ((Path) value).getFileName();
+                value = name != null ? name : value;
+            }
+            description.append(field.getName()).append('=').append(value).append('\n');
+        }
+        return description.toString();
+    }
+
+    private static void hashFile(MessageDigest digest, String role, Path file)
+        throws IOException {
+        update(digest, role + ":" + file.getFileName());
+        if (!Files.isRegularFile(file)) {
+            update(digest, "missing");
+            return;
+        }
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is unavailable.", ex);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format(Locale.ROOT, "%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // Filled in from the Gradle project version when resources are processed.
+    private static String loadToolVersion() {
+        Properties properties = new Properties();
+        try (InputStream in = BuildFingerprint.class.getResourceAsStream(VERSION_RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException ex) {
+            // Fall through to the development version.
+        }
+        return properties.getProperty("version", "dev");
+    }
+}
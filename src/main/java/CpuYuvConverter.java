@@ -0,0 +1,74 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.nio.ByteBuffer;
+
+final class CpuYuvConverter {
+
+    private final PixelKernels kernels;
+    private final int width;
+    private final int height;
+    private final byte[] row0;
+    private final byte[] row1;
+    private final byte[] luma0;
+    private final byte[] luma1;
+    private final byte[] chromaU;
+    private final byte[] chromaV;
+
+    CpuYuvConverter(PixelKernels kernels, int width, int height) {
+        if ((width & 1) == 1 || (height & 1) == 1) {
+            throw new IllegalArgumentException(
+                "YUV420P conversion needs even dimensions."
+            );
+        }
+        this.kernels = kernels;
+        this.width = width;
+        this.height = height;
+        this.row0 = new byte[width * 4];
+        this.row1 = new byte[width * 4];
+        this.luma0 = new byte[width];
+        this.luma1 = new byte[width];
+        this.chromaU = new byte[width / 2];
+        this.chromaV = new byte[width / 2];
+    }
+
+    PixelKernels kernels() {
+        return kernels;
+    }
+
+    void convert(CapturedFrame rgba, CapturedFrame yuv) {
+        if (
+            rgba.layout() != CapturedFrame.Layout.RGBA ||
+            yuv.layout() != CapturedFrame.Layout.YUV420P
+        ) {
+            throw new IllegalArgumentException(
+                "Expected an RGBA source and a YUV420P destination."
+            );
+        }
+        ByteBuffer src = rgba.pixels();
+        ByteBuffer dst = yuv.pixels();
+        int rowBytes = width * 4;
+        int chromaWidth = width / 2;
+        int uPlane = width * height;
+        int vPlane = uPlane + chromaWidth * (height / 2);
+
+        for (int y = 0; y < height; y += 2) {
+            src.position(y * rowBytes);
+            src.get(row0, 0, rowBytes);
+            src.get(row1, 0, rowBytes);
+
+            kernels.rgbaToLuma(row0, 0, luma0, 0, width);
+            kernels.rgbaToLuma(row1, 0, luma1, 0, width);
+            dst.position(y * width);
+            dst.put(luma0, 0, width);
+            dst.put(luma1, 0, width);
+
+            kernels.rgbaToChroma(row0, row1, 0, chromaU, chromaV, 0, width);
+            int chromaRow = (y / 2) * chromaWidth;
+            dst.position(uPlane + chromaRow);
+            dst.put(chromaU, 0, chromaWidth);
+            dst.position(vPlane + chromaRow);
+            dst.put(chromaV, 0, chromaWidth);
+        }
+        src.rewind();
+        dst.rewind();
+    }
+}
@@ -0,0 +1,111 @@
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.github.oscarne.createpreview.CapturedFrame;
+import com.github.oscarne.createpreview.PreviewEngine;
+import java.util.Arrays;
+
+/**
+ * {@link PreviewEngine} behind {@code PreviewRenderer}: one {@link App} on the
+ * software renderer, registered as a service so the API package can reach it.
+ */
+public final class EmbeddedPreviewEngine implements PreviewEngine {
+
+    private final App app;
+    private final int fps;
+    private final int frameCount;
+
+    private EmbeddedPreviewEngine(App.CliArguments arguments) {
+        this.app = new App(arguments);
+        this.fps = arguments.fps();
+        try {
+            app.load();
+            this.frameCount = new VideoGenerator(
+                app,
+                arguments,
+                app.frameRenderer(),
+                app.skeleton(),
+                app.animationState()
+            ).frameCount();
+        } catch (RuntimeException ex) {
+            app.dispose();
+            throw ex;
+        }
+    }
+
+    @Override
+    public int width() {
+        return app.frameRenderer().getOutputWidth();
+    }
+
+    @Override
+    public int height() {
+        return app.frameRenderer().getOutputHeight();
+    }
+
+    @Override
+    public int fps() {
+        return fps;
+    }
+
+    @Override
+    public int frameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public Timeline timeline() {
+        return new Timeline() {
+            private SkeletonInstance instance;
+
+            @Override
+            public CapturedFrame next() {
+                if (instance == null) {
+                    instance = app.createSkeletonInstance();
+                } else {
+                    instance.advance(1f / fps);
+                }
+                return app.frameRenderer().renderFrame(instance.skeleton());
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        app.dispose();
+    }
+
+    /**
+     * The GL renderer needs a window, so {@code --renderer gl} is replaced
+     * with the software renderer. A headless libGDX backend is started if the
+     * process has none.
+     */
+    public static final class Provider implements PreviewEngine.Provider {
+
+        @Override
+        public PreviewEngine open(String... args) {
+            App.CliArguments arguments = App.CliArguments.parse(args);
+            if (arguments.rendererBackend() != App.CliArguments.RendererBackend.SOFTWARE) {
+                App.logInfo("Embedded rendering uses the software renderer.");
+                String[] software = Arrays.copyOf(args, args.length + 2);
+                software[args.length] = "--renderer";
+                software[args.length + 1] = "software";
+                arguments = App.CliArguments.parse(software);
+            }
+            ensureBackend();
+            return new EmbeddedPreviewEngine(arguments);
+        }
+
+        // Only the libGDX globals (files, mock GL) are needed; the headless
+        // loop itself is not run.
+        private static synchronized void ensureBackend() {
+            if (Gdx.app != null) {
+                return;
+            }
+            HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+            config.updatesPerSecond = -1;
+            new HeadlessApplication(new ApplicationAdapter() {}, config);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+import com.esotericsoftware.spine.Skeleton;
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Renders a frame sequence once, encodes it with each requested profile and
+ * reports encode speed, size and quality (PSNR over RGB, SSIM over luma)
+ * against the captured source frames. The source frames are kept in a
+ * temporary {@link FrameSpool}, so a long or large run is backed by the page
+ * cache rather than held off-heap.
+ */
+final class EncoderBenchmark {
+
+    private static final int SSIM_BLOCK = 8;
+    private static final double SSIM_C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double SSIM_C2 = (0.03 * 255) * (0.03 * 255);
+
+    private final App app;
+    private final App.CliArguments arguments;
+    private final FrameRenderer frameRenderer;
+    private final Skeleton skeleton;
+
+    EncoderBenchmark(
+        App app,
+        App.CliArguments arguments,
+        FrameRenderer frameRenderer,
+        Skeleton skeleton
+    ) {
+        this.app = app;
+        this.arguments = arguments;
+        this.frameRenderer = frameRenderer;
+        this.skeleton = skeleton;
+    }
+
+    void run() {
+        Path spoolPath = null;
+        try {
+            spoolPath = Files.createTempFile("encoder-benchmark-", ".spool");
+            try (FrameSpool source = capture(spoolPath, arguments.benchmarkFrames())) {
+                report(source);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Unable to spool benchmark frames: " + ex.getMessage(),
+                ex
+            );
+        } finally {
+            if (spoolPath != null) {
+                try {
+                    Files.deleteIfExists(spoolPath);
+                } catch (IOException ex) {
+                    App.logWarn("Unable to delete " + spoolPath + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void report(FrameSpool source) {
+        int fps = source.fps();
+        int width = source.width();
+        int height = source.height();
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Benchmarking %d profile(s) on %d frame(s) at %dx%d",
+                arguments.benchmarkProfiles().size(),
+                source.capacity(),
+                width,
+                height
+            )
+        );
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "%-10s %10s %12s %10s %9s %7s",
+                "profile",
+                "enc fps",
+                "size KB",
+                "kbps",
+                "PSNR dB",
+                "SSIM"
+            )
+        );
+        for (EncoderProfile profile : arguments.benchmarkProfiles()) {
+            try {
+                Result result = benchmark(profile, source, width, height, fps);
+                App.logInfo(
+                    String.format(
+                        Locale.ROOT,
+                        "%-10s %10.1f %12.1f %10.0f %9.2f %7.4f",
+                        profile.id(),
+                        result.encodeFps,
+                        result.bytes / 1024.0,
+                        result.bytes * 8.0 / 1000.0 / (source.capacity() / (double) fps),
+                        result.psnr,
+                        result.ssim
+                    )
+                );
+            } catch (Exception ex) {
+                App.logWarn(
+                    "Profile '" + profile.id() + "' failed: " + ex.getMessage()
+                );
+            }
+        }
+    }
+
+    private FrameSpool capture(Path path, int frames) throws IOException {
+        int fps = arguments.fps();
+        float step = 1f / fps;
+        FrameSpool spool = FrameSpool.create(
+            path,
+            frameRenderer.getOutputWidth(),
+            frameRenderer.getOutputHeight(),
+            fps,
+            frames
+        );
+        try {
+            for (int i = 0; i < frames; i++) {
+                CapturedFrame frame = frameRenderer.renderFrame(skeleton);
+                try {
+                    spool.write(frame, i);
+                } finally {
+                    frame.release();
+                }
+                app.advanceAnimation(step);
+            }
+        } catch (IOException | RuntimeException ex) {
+            spool.close();
+            throw ex;
+        }
+        return spool;
+    }
+
+    private Result benchmark(
+        EncoderProfile profile,
+        FrameSpool source,
+        int width,
+        int height,
+        int fps
+    ) throws Exception {
+        Path output = Files.createTempFile(
+            "encoder-benchmark-" + profile.id() + "-",
+            "." + profile.extension()
+        );
+        try {
+            FFmpegFrameRecorder recorder = profile.newRecorder(
+                output,
+                width,
+                height,
+                fps,
+                false
+            );
+            long start = System.nanoTime();
+            try {
+                recorder.start();
+                for (int i = 0; i < source.capacity(); i++) {
+                    recorder.recordImage(
+                        width,
+                        height,
+                        Frame.DEPTH_UBYTE,
+                        4,
+                        source.stride(),
+                        avutil.AV_PIX_FMT_RGBA,
+                        source.frame(i)
+                    );
+                }
+                recorder.stop();
+            } finally {
+                recorder.release();
+            }
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            Result result = new Result();
+            result.encodeFps = source.capacity() / Math.max(seconds, 1e-9);
+            result.bytes = Files.size(output);
+            compare(output, source, width, height, result);
+            return result;
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    private void compare(
+        Path encoded,
+        FrameSpool source,
+        int width,
+        int height,
+        Result result
+    ) throws Exception {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(encoded.toString());
+        grabber.setPixelFormat(avutil.AV_PIX_FMT_RGBA);
+        double squaredError = 0;
+        double ssimSum = 0;
+        int compared = 0;
+        try {
+            grabber.start();
+            Frame decoded;
+            while (compared < source.capacity() && (decoded = grabber.grabImage()) != null) {
+                ByteBuffer actual = (ByteBuffer) decoded.image[0];
+                ByteBuffer expected = source.frame(compared);
+                squaredError += squaredError(
+                    expected,
+                    actual,
+                    decoded.imageStride,
+                    width,
+                    height
+                );
+                ssimSum += ssim(expected, actual, decoded.imageStride, width, height);
+                compared++;
+            }
+            grabber.stop();
+        } finally {
+            grabber.release();
+        }
+        if (compared == 0) {
+            throw new IllegalStateException("No frames decoded from " + encoded);
+        }
+        double mse = squaredError / ((double) compared * width * height * 3);
+        result.psnr = mse == 0 ? 99.0 : 10 * Math.log10(255.0 * 255.0 / mse);
+        result.ssim = ssimSum / compared;
+    }
+
+    private static double squaredError(
+        ByteBuffer expected,
+        ByteBuffer actual,
+        int stride,
+        int width,
+        int height
+    ) {
+        double sum = 0;
+        for (int y = 0; y < height; y++) {
+            int expectedRow = y * width * 4;
+            int actualRow = y * stride;
+            for (int x = 0; x < width; x++) {
+                for (int c = 0; c < 3; c++) {
+                    int diff = (expected.get(expectedRow + x * 4 + c) & 0xff) -
+                        (actual.get(actualRow + x * 4 + c) & 0xff);
+                    sum += diff * diff;
+                }
+            }
+        }
+        return sum;
+    }
+
+    // Mean SSIM over non-overlapping 8x8 luma blocks.
+    private static double ssim(
+        ByteBuffer expected,
+        ByteBuffer actual,
+        int stride,
+        int width,
+        int height
+    ) {
+        double total = 0;
+        int blocks = 0;
+        for (int by = 0; by + SSIM_BLOCK <= height; by += SSIM_BLOCK) {
+            for (int bx = 0; bx + SSIM_BLOCK <= width; bx += SSIM_BLOCK) {
+                double sumA = 0;
+                double sumB = 0;
+                double sumAA = 0;
+                double sumBB = 0;
+                double sumAB = 0;
+                for (int y = by; y < by + SSIM_BLOCK; y++) {
+                    for (int x = bx; x < bx + SSIM_BLOCK; x++) {
+                        double a = luma(expected, y * width * 4 + x * 4);
+                        double b = luma(actual, y * stride + x * 4);
+                        sumA += a;
+                        sumB += b;
+                        sumAA += a * a;
+                        sumBB += b * b;
+                        sumAB += a * b;
+                    }
+                }
+                double n = SSIM_BLOCK * SSIM_BLOCK;
+                double meanA = sumA / n;
+                double meanB = sumB / n;
+                double varA = sumAA / n - meanA * meanA;
+                double varB = sumBB / n - meanB * meanB;
+                double cov = sumAB / n - meanA * meanB;
+                total += ((2 * meanA * meanB + SSIM_C1) * (2 * cov + SSIM_C2)) /
+                    ((meanA * meanA + meanB * meanB + SSIM_C1) * (varA + varB + SSIM_C2));
+                blocks++;
+            }
+        }
+        return blocks == 0 ? 1.0 : total / blocks;
+    }
+
+    private static double luma(ByteBuffer pixels, int offset) {
+        return 0.299 * (pixels.get(offset) & 0xff) +
+            0.587 * (pixels.get(offset + 1) & 0xff) +
+            0.114 * (pixels.get(offset + 2) & 0xff);
+    }
+
+    private static final class Result {
+
+        private double encodeFps;
+        private long bytes;
+        private double psnr;
+        private double ssim;
+    }
+}
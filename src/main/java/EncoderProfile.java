@@ -0,0 +1,250 @@
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+
+/** Named video encoder settings selectable with {@code --encoder-profile}. */
+enum EncoderProfile {
+    DRAFT("draft", "mp4", "mp4", 23) {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+            recorder.setVideoBitrate(0);
+            recorder.setVideoOption("crf", Integer.toString(crf()));
+            recorder.setVideoOption("preset", "ultrafast");
+            recorder.setVideoOption("tune", "animation");
+        }
+    },
+    BALANCED("balanced", "mp4", "mp4", 18) {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+            recorder.setVideoBitrate(0);
+            recorder.setVideoOption("crf", Integer.toString(crf()));
+            recorder.setVideoOption("preset", "medium");
+            recorder.setVideoOption("profile", "high");
+            recorder.setVideoOption("tune", "animation");
+        }
+    },
+    ARCHIVAL("archival", "mp4", "mp4", 10) {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+            recorder.setVideoBitrate(0);
+            recorder.setVideoOption("crf", Integer.toString(crf()));
+            recorder.setVideoOption("preset", "slower");
+            recorder.setVideoOption("profile", "high");
+            recorder.setVideoOption("tune", "animation");
+        }
+    },
+    VP9("vp9", "webm", "webm", 32) {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodecName("libvpx-vp9");
+            recorder.setVideoBitrate(0);
+            recorder.setVideoOption("crf", Integer.toString(crf()));
+            recorder.setVideoOption("deadline", "good");
+            recorder.setVideoOption("cpu-used", "2");
+            recorder.setVideoOption("row-mt", "1");
+        }
+    },
+    AV1("av1", "mp4", "mp4", 30) {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodecName("libaom-av1");
+            recorder.setVideoBitrate(0);
+            recorder.setVideoOption("crf", Integer.toString(crf()));
+            recorder.setVideoOption("cpu-used", "6");
+            recorder.setVideoOption("row-mt", "1");
+        }
+    },
+    FFV1("ffv1", "matroska", "mkv") {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_FFV1);
+            recorder.setGopSize(1);
+            recorder.setVideoOption("level", "3");
+            recorder.setVideoOption("slices", "16");
+        }
+    },
+    X264_LOSSLESS("x264-lossless", "matroska", "mkv") {
+        @Override
+        void configureCodec(FFmpegFrameRecorder recorder, int width, int height, int fps) {
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+            recorder.setVideoOption("qp", "0");
+            recorder.setVideoOption("preset", "ultrafast");
+        }
+    };
+
+    // Each keyframe starts a self-contained fragment, so the file is playable
+    // while it is still being written and never needs a second pass.
+    private static final String FRAGMENTED_MOVFLAGS =
+        "frag_keyframe+empty_moov+default_base_moof";
+
+    private static final int LOSSLESS = -1;
+
+    private final String id;
+    private final String format;
+    private final String extension;
+    // Constant-quality factor, or LOSSLESS. No profile targets a bitrate.
+    private final int crf;
+
+    /** A lossless profile. */
+    EncoderProfile(String id, String format, String extension) {
+        this(id, format, extension, LOSSLESS);
+    }
+
+    EncoderProfile(String id, String format, String extension, int crf) {
+        this.id = id;
+        this.format = format;
+        this.extension = extension;
+        this.crf = crf;
+    }
+
+    String id() {
+        return id;
+    }
+
+    String format() {
+        return format;
+    }
+
+    String extension() {
+        return extension;
+    }
+
+    int crf() {
+        return crf;
+    }
+
+    /** Rate control as logged, e.g. {@code CRF 23} or {@code lossless}. */
+    String rateControl() {
+        return crf == LOSSLESS ? "lossless" : "CRF " + crf;
+    }
+
+    /** Fast lossless profiles meant to be transcoded later. */
+    boolean isIntermediate() {
+        return this == FFV1 || this == X264_LOSSLESS;
+    }
+
+    abstract void configureCodec(
+        FFmpegFrameRecorder recorder,
+        int width,
+        int height,
+        int fps
+    );
+
+    FFmpegFrameRecorder newRecorder(
+        Path output,
+        int width,
+        int height,
+        int fps,
+        boolean segment
+    ) {
+        return newRecorder(output, width, height, fps, segment, false);
+    }
+
+    /**
+     * Creates a recorder configured for this profile but not yet started.
+     * A segment is its own encode, so it starts on an IDR frame with fresh
+     * parameter sets and can be joined to the others by stream copy.
+     */
+    FFmpegFrameRecorder newRecorder(
+        Path output,
+        int width,
+        int height,
+        int fps,
+        boolean segment,
+        boolean fragmented
+    ) {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(
+            output.toString(),
+            width,
+            height
+        );
+        configure(recorder, width, height, fps);
+        if (!segment) {
+            applyContainerOptions(recorder, fragmented);
+        }
+        return recorder;
+    }
+
+    /**
+     * Creates a recorder that writes to a stream. A pipe cannot be seeked, so
+     * MP4 output is always fragmented.
+     */
+    FFmpegFrameRecorder newRecorder(
+        OutputStream output,
+        int width,
+        int height,
+        int fps
+    ) {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(
+            output,
+            width,
+            height
+        );
+        configure(recorder, width, height, fps);
+        applyContainerOptions(recorder, true);
+        return recorder;
+    }
+
+    /** Sets the MP4 layout of a final (non-segment) output. */
+    void applyContainerOptions(FFmpegFrameRecorder recorder, boolean fragmented) {
+        if ("mp4".equals(format)) {
+            recorder.setOption(
+                "movflags",
+                fragmented ? FRAGMENTED_MOVFLAGS : "+faststart"
+            );
+        }
+    }
+
+    private void configure(
+        FFmpegFrameRecorder recorder,
+        int width,
+        int height,
+        int fps
+    ) {
+        recorder.setFormat(format);
+        recorder.setFrameRate(fps);
+        recorder.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+        configureCodec(recorder, width, height, fps);
+    }
+
+    static EncoderProfile parse(String value) {
+        String normalized = value.toLowerCase(Locale.ROOT).trim();
+        for (EncoderProfile profile : values()) {
+            if (profile.id.equals(normalized)) {
+                return profile;
+            }
+        }
+        throw new IllegalArgumentException(
+            "Unknown encoder profile '" + value + "'. Expected one of: " + ids()
+        );
+    }
+
+    static List<EncoderProfile> parseList(String value) {
+        List<EncoderProfile> profiles = new ArrayList<>();
+        for (String part : value.split(",")) {
+            if (!part.trim().isEmpty()) {
+                profiles.add(parse(part));
+            }
+        }
+        if (profiles.isEmpty()) {
+            throw new IllegalArgumentException("No encoder profiles given.");
+        }
+        return profiles;
+    }
+
+    static String ids() {
+        List<String> ids = new ArrayList<>();
+        for (EncoderProfile profile : values()) {
+            ids.add(profile.id);
+        }
+        return String.join(", ", ids);
+    }
+}
@@ -0,0 +1,147 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+final class FramePipeline implements AutoCloseable {
+
+    interface Stage {
+        CapturedFrame process(CapturedFrame frame, int index) throws Exception;
+    }
+
+    interface Sink {
+        void accept(CapturedFrame frame) throws Exception;
+    }
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final Future<CapturedFrame> END_OF_STREAM =
+        CompletableFuture.completedFuture(null);
+
+    private final Stage stage;
+    private final Sink sink;
+    private final ExecutorService workers;
+    private final BlockingQueue<Future<CapturedFrame>> ordered;
+    private final Thread encoder;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private boolean finished;
+
+    FramePipeline(int workerCount, int depth, Stage stage, Sink sink) {
+        this.stage = stage;
+        this.sink = sink;
+        this.workers = Executors.newFixedThreadPool(
+            Math.max(1, workerCount),
+            runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "frame-worker-" + THREAD_COUNTER.incrementAndGet()
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        this.ordered = new ArrayBlockingQueue<>(Math.max(1, depth));
+        this.encoder = new Thread(this::drain, "frame-encoder");
+        this.encoder.setDaemon(true);
+        this.encoder.start();
+    }
+
+    void submit(CapturedFrame frame, int index) throws Exception {
+        if (failure.get() != null) {
+            frame.release();
+            rethrow();
+        }
+        Future<CapturedFrame> task;
+        try {
+            task = workers.submit(() -> stage.process(frame, index));
+        } catch (RuntimeException ex) {
+            frame.release();
+            throw ex;
+        }
+        ordered.put(task);
+    }
+
+    void finish() throws Exception {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        ordered.put(END_OF_STREAM);
+        encoder.join();
+        workers.shutdown();
+        rethrow();
+    }
+
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            failure.compareAndSet(
+                null,
+                new IllegalStateException("Frame pipeline aborted.")
+            );
+            try {
+                ordered.put(END_OF_STREAM);
+                encoder.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    private void drain() {
+        while (true) {
+            Future<CapturedFrame> task;
+            try {
+                task = ordered.take();
+            } catch (InterruptedException ex) {
+                failure.compareAndSet(null, ex);
+                return;
+            }
+            if (task == END_OF_STREAM) {
+                return;
+            }
+
+            CapturedFrame frame;
+            try {
+                frame = task.get();
+            } catch (ExecutionException ex) {
+                failure.compareAndSet(null, ex.getCause());
+                continue;
+            } catch (InterruptedException ex) {
+                failure.compareAndSet(null, ex);
+                return;
+            }
+
+            if (failure.get() != null) {
+                frame.release();
+                continue;
+            }
+            try {
+                sink.accept(frame);
+            } catch (Throwable ex) {
+                failure.compareAndSet(null, ex);
+            }
+        }
+    }
+
+    private void rethrow() throws Exception {
+        Throwable error = failure.get();
+        if (error == null) {
+            return;
+        }
+        if (error instanceof Exception) {
+            throw (Exception) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IllegalStateException(error);
+    }
+}
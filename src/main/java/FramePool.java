@@ -0,0 +1,83 @@
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.utils.BufferUtils;
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+
+public final class FramePool {
+
+    private final int width;
+    private final int height;
+    private final Map<CapturedFrame.Layout, ArrayDeque<PooledFrame>> free =
+        new EnumMap<>(CapturedFrame.Layout.class);
+    private long allocations;
+    private long acquisitions;
+    private boolean disposed;
+
+    FramePool(int width, int height) {
+        this.width = width;
+        this.height = height;
+        for (CapturedFrame.Layout layout : CapturedFrame.Layout.values()) {
+            free.put(layout, new ArrayDeque<>());
+        }
+    }
+
+    public synchronized CapturedFrame acquire(CapturedFrame.Layout layout) {
+        if (disposed) {
+            throw new IllegalStateException("Frame pool has been disposed.");
+        }
+        acquisitions++;
+        PooledFrame frame = free.get(layout).pollFirst();
+        if (frame == null) {
+            allocations++;
+            frame = allocate(layout);
+        }
+        frame.acquired();
+        return frame;
+    }
+
+    synchronized void release(PooledFrame frame) {
+        if (disposed) {
+            frame.dispose();
+            return;
+        }
+        free.get(frame.layout()).addFirst(frame);
+    }
+
+    public synchronized long allocations() {
+        return allocations;
+    }
+
+    public synchronized long acquisitions() {
+        return acquisitions;
+    }
+
+    synchronized void dispose() {
+        disposed = true;
+        for (ArrayDeque<PooledFrame> frames : free.values()) {
+            for (PooledFrame frame : frames) {
+                frame.dispose();
+            }
+            frames.clear();
+        }
+    }
+
+    private PooledFrame allocate(CapturedFrame.Layout layout) {
+        switch (layout) {
+            case YUV420P:
+                return new PooledFrame(
+                    this,
+                    width,
+                    height,
+                    BufferUtils.newByteBuffer(width * height * 3 / 2)
+                );
+            case RGBA:
+            default:
+                return new PooledFrame(
+                    this,
+                    new Pixmap(width, height, Pixmap.Format.RGBA8888)
+                );
+        }
+    }
+}
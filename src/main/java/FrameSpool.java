@@ -0,0 +1,293 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Raw RGBA frame spool backed by a preallocated memory-mapped file. Writers
+ * copy each frame straight into its slot; readers get zero-copy views of the
+ * mapped frames.
+ *
+ * <p>Layout (little-endian): a 64-byte header, an index of one 64-bit file
+ * offset per frame slot (0 while the slot is empty), then the frame data at a
+ * page-aligned offset, one tightly packed {@code stride * height} block per
+ * frame.
+ *
+ * <pre>
+ *  0  magic "CPSPOOL1"      32  fps
+ *  8  version (1)           36  frame count
+ * 12  header size (64)      40  capacity
+ * 16  width                 44  reserved
+ * 20  height                48  index offset (long)
+ * 24  stride in bytes       56  data offset (long)
+ * 28  pixel format (0 = RGBA8888)
+ * </pre>
+ */
+final class FrameSpool implements AutoCloseable {
+
+    private static final byte[] MAGIC = "CPSPOOL1".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int PIXEL_FORMAT_RGBA = 0;
+    private static final long PAGE_SIZE = 4096;
+    // Frames are mapped in chunks of at most this size (a single mapping is
+    // limited to 2 GB).
+    private static final long CHUNK_BYTES = 1L << 30;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean writable;
+    private final MappedByteBuffer header;
+    private final int width;
+    private final int height;
+    private final int stride;
+    private final int fps;
+    private final int capacity;
+    private final long dataOffset;
+    private final int frameBytes;
+    private final int framesPerChunk;
+    private final MappedByteBuffer[] chunks;
+    private final AtomicInteger written = new AtomicInteger();
+    private int frameCount;
+    private boolean finished;
+
+    private FrameSpool(
+        Path path,
+        FileChannel channel,
+        boolean writable,
+        MappedByteBuffer header
+    ) {
+        this.path = path;
+        this.channel = channel;
+        this.writable = writable;
+        this.header = header;
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        this.width = header.getInt(16);
+        this.height = header.getInt(20);
+        this.stride = header.getInt(24);
+        this.fps = header.getInt(32);
+        this.frameCount = header.getInt(36);
+        this.capacity = header.getInt(40);
+        this.dataOffset = header.getLong(56);
+        this.frameBytes = stride * height;
+        this.framesPerChunk = (int) Math.max(1, CHUNK_BYTES / frameBytes);
+        this.chunks = new MappedByteBuffer[(capacity + framesPerChunk - 1) / framesPerChunk];
+    }
+
+    /** Creates a spool with room for {@code capacity} frames, replacing any existing file. */
+    static FrameSpool create(Path path, int width, int height, int fps, int capacity)
+        throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        int stride = width * 4;
+        long indexBytes = (long) capacity * Long.BYTES;
+        long dataOffset = alignToPage(HEADER_SIZE + indexBytes);
+        long length = dataOffset + (long) capacity * stride * height;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(0);
+            file.setLength(length);
+        }
+
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        try {
+            MappedByteBuffer header = channel.map(
+                FileChannel.MapMode.READ_WRITE,
+                0,
+                dataOffset
+            );
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC);
+            header.putInt(8, VERSION);
+            header.putInt(12, HEADER_SIZE);
+            header.putInt(16, width);
+            header.putInt(20, height);
+            header.putInt(24, stride);
+            header.putInt(28, PIXEL_FORMAT_RGBA);
+            header.putInt(32, fps);
+            header.putInt(36, 0);
+            header.putInt(40, capacity);
+            header.putLong(48, HEADER_SIZE);
+            header.putLong(56, dataOffset);
+            return new FrameSpool(path, channel, true, header);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    static FrameSpool open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a frame spool: " + path);
+            }
+            MappedByteBuffer probe = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                HEADER_SIZE
+            );
+            probe.order(ByteOrder.LITTLE_ENDIAN);
+            byte[] magic = new byte[MAGIC.length];
+            probe.get(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a frame spool: " + path);
+            }
+            if (probe.getInt(8) != VERSION || probe.getInt(28) != PIXEL_FORMAT_RGBA) {
+                throw new IOException(
+                    "Unsupported frame spool version or pixel format: " + path
+                );
+            }
+            MappedByteBuffer header = channel.map(
+                FileChannel.MapMode.READ_ONLY,
+                0,
+                probe.getLong(56)
+            );
+            return new FrameSpool(path, channel, false, header);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    int stride() {
+        return stride;
+    }
+
+    int fps() {
+        return fps;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Frames recorded in the header; set when the writer finishes. */
+    int frameCount() {
+        return frameCount;
+    }
+
+    boolean hasFrame(int index) {
+        return index >= 0 && index < capacity && header.getLong(HEADER_SIZE + index * Long.BYTES) != 0;
+    }
+
+    /**
+     * Copies a frame into slot {@code index}. Slots are independent, so
+     * pipeline workers may write concurrently and out of order.
+     */
+    void write(CapturedFrame frame, int index) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("Frame spool is open read-only: " + path);
+        }
+        if (frame.layout() != CapturedFrame.Layout.RGBA) {
+            throw new IllegalArgumentException("Frame spool stores RGBA frames only.");
+        }
+        if (frame.width() != width || frame.height() != height) {
+            throw new IllegalArgumentException(
+                "Frame is " + frame.width() + "x" + frame.height() +
+                    "; spool expects " + width + "x" + height + "."
+            );
+        }
+        ByteBuffer source = frame.pixels().duplicate();
+        source.limit(frameBytes).position(0);
+        slot(index).put(source);
+        header.putLong(HEADER_SIZE + index * Long.BYTES, offset(index));
+        written.incrementAndGet();
+    }
+
+    /** Read-only, zero-copy view of one frame. */
+    ByteBuffer frame(int index) throws IOException {
+        if (!hasFrame(index)) {
+            throw new IllegalArgumentException("Frame " + index + " is not in spool " + path);
+        }
+        return slot(index).asReadOnlyBuffer();
+    }
+
+    /** Records the frame count and flushes the mapping to disk. */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        frameCount = written.get();
+        header.putInt(36, frameCount);
+        synchronized (chunks) {
+            for (MappedByteBuffer chunk : chunks) {
+                if (chunk != null) {
+                    chunk.force();
+                }
+            }
+        }
+        header.force();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            App.logWarn("Unable to close frame spool " + path + ": " + ex.getMessage());
+        }
+    }
+
+    private ByteBuffer slot(int index) throws IOException {
+        if (index < 0 || index >= capacity) {
+            throw new IndexOutOfBoundsException(
+                "Frame " + index + " is outside spool capacity " + capacity + "."
+            );
+        }
+        int chunkIndex = index / framesPerChunk;
+        MappedByteBuffer chunk;
+        synchronized (chunks) {
+            chunk = chunks[chunkIndex];
+            if (chunk == null) {
+                int first = chunkIndex * framesPerChunk;
+                int count = Math.min(framesPerChunk, capacity - first);
+                chunk = channel.map(
+                    writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    offset(first),
+                    (long) count * frameBytes
+                );
+                chunks[chunkIndex] = chunk;
+            }
+        }
+        ByteBuffer view = chunk.duplicate();
+        int start = (index - chunkIndex * framesPerChunk) * frameBytes;
+        view.limit(start + frameBytes).position(start);
+        return view.slice();
+    }
+
+    private long offset(int index) {
+        return dataOffset + (long) index * frameBytes;
+    }
+
+    private static long alignToPage(long value) {
+        return (value + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+    }
+}
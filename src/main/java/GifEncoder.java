@@ -0,0 +1,204 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming animated GIF writer. Each frame gets its own octree palette
+ * (local colour table) and is LZW-compressed as it arrives, so memory use is
+ * one index buffer no matter how many frames are written.
+ */
+final class GifEncoder {
+
+    private static final int MAX_CODE_SIZE = 12;
+    private static final int MAX_CODES = 1 << MAX_CODE_SIZE;
+    private static final int HASH_SIZE = 5003;
+    private static final int DISPOSE_TO_BACKGROUND = 2;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final int fps;
+    private final OctreeQuantizer quantizer = new OctreeQuantizer(255);
+    private final byte[] indices;
+    private final int[] hashKeys = new int[HASH_SIZE];
+    private final int[] hashCodes = new int[HASH_SIZE];
+    private final byte[] block = new byte[256];
+    private int blockLength;
+    private int bitBuffer;
+    private int bitCount;
+    private int frames;
+
+    GifEncoder(OutputStream out, int width, int height, int fps)
+        throws IOException {
+        if (width > 0xffff || height > 0xffff) {
+            throw new IllegalArgumentException(
+                "GIF frames are limited to 65535x65535 pixels."
+            );
+        }
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        this.fps = Math.max(1, fps);
+        this.indices = new byte[width * height];
+        writeHeader();
+    }
+
+    void writeFrame(ByteBuffer rgba) throws IOException {
+        quantizer.quantize(rgba, width, height, indices);
+        int entries = quantizer.colors() + (quantizer.hasTransparency() ? 1 : 0);
+        int tableBits = 1;
+        while ((1 << tableBits) < entries) {
+            tableBits++;
+        }
+
+        // Graphic control: per-frame delay and transparency. Frames are full
+        // canvases, so each one clears the previous before drawing.
+        int delay = delayCentiseconds(frames + 1) - delayCentiseconds(frames);
+        out.write(0x21);
+        out.write(0xf9);
+        out.write(4);
+        out.write(
+            (DISPOSE_TO_BACKGROUND << 2) | (quantizer.hasTransparency() ? 1 : 0)
+        );
+        writeShort(delay);
+        out.write(quantizer.hasTransparency() ? quantizer.transparentIndex() : 0);
+        out.write(0);
+
+        out.write(0x2c);
+        writeShort(0);
+        writeShort(0);
+        writeShort(width);
+        writeShort(height);
+        out.write(0x80 | (tableBits - 1));
+        byte[] palette = quantizer.palette();
+        int paletteBytes = Math.min(palette.length, entries * 3);
+        out.write(palette, 0, paletteBytes);
+        for (int i = paletteBytes; i < (1 << tableBits) * 3; i++) {
+            out.write(0);
+        }
+
+        compress(Math.max(2, tableBits));
+        frames++;
+    }
+
+    /** Writes the trailer. The stream is left open. */
+    void finish() throws IOException {
+        out.write(0x3b);
+        out.flush();
+    }
+
+    int frames() {
+        return frames;
+    }
+
+    private void writeHeader() throws IOException {
+        out.write(new byte[] { 'G', 'I', 'F', '8', '9', 'a' });
+        writeShort(width);
+        writeShort(height);
+        out.write(0x70); // No global table, 8 bits per primary.
+        out.write(0);
+        out.write(0);
+        // NETSCAPE2.0 application extension: loop forever.
+        out.write(0x21);
+        out.write(0xff);
+        out.write(11);
+        out.write(new byte[] { 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0' });
+        out.write(3);
+        out.write(1);
+        writeShort(0);
+        out.write(0);
+    }
+
+    // Frame delays are whole centiseconds; rounding the running total keeps
+    // rates such as 30 fps from drifting.
+    private int delayCentiseconds(int frame) {
+        return (int) Math.round(frame * 100.0 / fps);
+    }
+
+    private void compress(int minCodeSize) throws IOException {
+        out.write(minCodeSize);
+        int clearCode = 1 << minCodeSize;
+        int endCode = clearCode + 1;
+        int codeSize = minCodeSize + 1;
+        int nextCode = clearCode + 2;
+        Arrays.fill(hashKeys, -1);
+        blockLength = 0;
+        bitBuffer = 0;
+        bitCount = 0;
+
+        writeCode(clearCode, codeSize);
+        int prefix = indices[0] & 0xff;
+        for (int i = 1; i < indices.length; i++) {
+            int symbol = indices[i] & 0xff;
+            int key = (symbol << MAX_CODE_SIZE) | prefix;
+            int slot = (key * 31 + symbol) % HASH_SIZE;
+            if (slot < 0) {
+                slot += HASH_SIZE;
+            }
+            while (hashKeys[slot] != -1 && hashKeys[slot] != key) {
+                slot = slot + 1 == HASH_SIZE ? 0 : slot + 1;
+            }
+            if (hashKeys[slot] == key) {
+                prefix = hashCodes[slot];
+                continue;
+            }
+
+            writeCode(prefix, codeSize);
+            if (nextCode > (1 << codeSize) - 1 && codeSize < MAX_CODE_SIZE) {
+                codeSize++;
+            }
+            if (nextCode < MAX_CODES) {
+                hashKeys[slot] = key;
+                hashCodes[slot] = nextCode++;
+            } else {
+                writeCode(clearCode, codeSize);
+                Arrays.fill(hashKeys, -1);
+                codeSize = minCodeSize + 1;
+                nextCode = clearCode + 2;
+            }
+            prefix = symbol;
+        }
+        writeCode(prefix, codeSize);
+        if (nextCode > (1 << codeSize) - 1 && codeSize < MAX_CODE_SIZE) {
+            codeSize++;
+        }
+        writeCode(endCode, codeSize);
+
+        if (bitCount > 0) {
+            writeByte(bitBuffer & 0xff);
+        }
+        flushBlock();
+        out.write(0);
+    }
+
+    private void writeCode(int code, int codeSize) throws IOException {
+        bitBuffer |= code << bitCount;
+        bitCount += codeSize;
+        while (bitCount >= 8) {
+            writeByte(bitBuffer & 0xff);
+            bitBuffer >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private void writeByte(int value) throws IOException {
+        block[blockLength++] = (byte) value;
+        if (blockLength == 255) {
+            flushBlock();
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockLength > 0) {
+            out.write(blockLength);
+            out.write(block, 0, blockLength);
+            blockLength = 0;
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+    }
+}
@@ -0,0 +1,237 @@
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.Matrix4;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonRenderer;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.util.ArrayDeque;
+
+public final class GlFrameRenderer implements FrameRenderer {
+
+    private final SkeletonRenderer renderer;
+    private final TwoColorPolygonBatch batch;
+    private final OrthographicCamera camera;
+    private final FrameBuffer frameBuffer;
+    private final int outputWidth;
+    private final int outputHeight;
+    private final PboReadback pboReadback;
+    private final FramePool framePool;
+    private final ArrayDeque<CapturedFrame> capturedFrames =
+        new ArrayDeque<>();
+    private final Matrix4 captureProjection = new Matrix4();
+    private CapturedFrame.Layout captureLayout = CapturedFrame.Layout.RGBA;
+    private GpuYuvConverter yuvConverter;
+    private PboReadback yuvReadback;
+
+    public GlFrameRenderer(
+        SkeletonRenderer renderer,
+        TwoColorPolygonBatch batch,
+        OrthographicCamera camera,
+        FrameBuffer frameBuffer,
+        int outputWidth,
+        int outputHeight,
+        int readbackDepth
+    ) {
+        this.renderer = renderer;
+        this.batch = batch;
+        this.camera = camera;
+        this.frameBuffer = frameBuffer;
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.framePool = new FramePool(outputWidth, outputHeight);
+        this.pboReadback = readbackDepth > 1
+            ? new PboReadback(outputWidth, outputHeight, readbackDepth)
+            : null;
+    }
+
+    @Override
+    public void submitFrame(Skeleton skeleton) {
+        if (!canSubmitFrame()) {
+            throw new IllegalStateException(
+                "Readback queue is full; take a frame first."
+            );
+        }
+        frameBuffer.begin();
+
+        Gdx.gl.glViewport(0, 0, outputWidth, outputHeight);
+        Gdx.gl.glClearColor(0f, 0f, 0f, 1f);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        Gdx.gl.glDisable(GL20.GL_SCISSOR_TEST);
+
+        // GL reads rows bottom-up; drawing with a Y-mirrored projection makes
+        // the readback come out top-down without a separate flip pass.
+        captureProjection.setToScaling(1f, -1f, 1f).mul(camera.combined);
+        // begin() uploads u_projTrans through the scratch buffer of the
+        // process-wide Gdx.gl, which other worker threads also draw through.
+        synchronized (App.SHARED_RESOURCES) {
+            batch.setProjectionMatrix(captureProjection);
+            batch.begin();
+        }
+        renderer.draw(batch, skeleton);
+        batch.end();
+
+        if (captureLayout == CapturedFrame.Layout.YUV420P) {
+            frameBuffer.end();
+            yuvConverter.begin(frameBuffer.getColorBufferTexture());
+            capture(yuvConverter.targetWidth(), yuvConverter.targetHeight());
+            yuvConverter.end();
+        } else {
+            capture(outputWidth, outputHeight);
+            frameBuffer.end();
+        }
+    }
+
+    @Override
+    public boolean canSubmitFrame() {
+        PboReadback readback = activeReadback();
+        if (readback != null) {
+            return !readback.isFull();
+        }
+        return capturedFrames.isEmpty();
+    }
+
+    @Override
+    public int pendingFrames() {
+        PboReadback readback = activeReadback();
+        if (readback != null) {
+            return readback.pending();
+        }
+        return capturedFrames.size();
+    }
+
+    @Override
+    public boolean supportsCaptureLayout(CapturedFrame.Layout layout) {
+        return (
+            layout == CapturedFrame.Layout.RGBA ||
+            GpuYuvConverter.supports(outputWidth, outputHeight)
+        );
+    }
+
+    @Override
+    public void setCaptureLayout(CapturedFrame.Layout layout) {
+        if (layout == captureLayout) {
+            return;
+        }
+        if (pendingFrames() > 0) {
+            throw new IllegalStateException(
+                "Cannot change the capture layout while frames are pending."
+            );
+        }
+        if (!supportsCaptureLayout(layout)) {
+            throw new IllegalArgumentException(
+                "Capture layout " +
+                    layout +
+                    " is not supported at " +
+                    outputWidth +
+                    "x" +
+                    outputHeight
+            );
+        }
+        if (layout == CapturedFrame.Layout.YUV420P && yuvConverter == null) {
+            // The converter's shader, mesh and frame buffer register in
+            // libGDX's static registries, which other worker contexts share.
+            synchronized (App.SHARED_RESOURCES) {
+                yuvConverter = new GpuYuvConverter(outputWidth, outputHeight);
+            }
+            if (pboReadback != null) {
+                yuvReadback = new PboReadback(
+                    yuvConverter.targetWidth(),
+                    yuvConverter.targetHeight(),
+                    pboReadback.depth()
+                );
+            }
+        }
+        captureLayout = layout;
+    }
+
+    @Override
+    public CapturedFrame.Layout captureLayout() {
+        return captureLayout;
+    }
+
+    @Override
+    public CapturedFrame takeFrame() {
+        PboReadback readback = activeReadback();
+        if (readback != null) {
+            CapturedFrame frame = framePool.acquire(captureLayout);
+            readback.finish(frame.pixels());
+            return frame;
+        }
+        CapturedFrame frame = capturedFrames.pollFirst();
+        if (frame == null) {
+            throw new IllegalStateException("No frame has been submitted.");
+        }
+        return frame;
+    }
+
+    @Override
+    public FramePool framePool() {
+        return framePool;
+    }
+
+    public int readbackDepth() {
+        return pboReadback != null ? pboReadback.depth() : 1;
+    }
+
+    @Override
+    public void dispose() {
+        for (CapturedFrame frame : capturedFrames) {
+            frame.release();
+        }
+        capturedFrames.clear();
+        if (pboReadback != null) {
+            pboReadback.dispose();
+        }
+        if (yuvReadback != null) {
+            yuvReadback.dispose();
+        }
+        if (yuvConverter != null) {
+            yuvConverter.dispose();
+        }
+        framePool.dispose();
+    }
+
+    @Override
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    @Override
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    private PboReadback activeReadback() {
+        return captureLayout == CapturedFrame.Layout.YUV420P
+            ? yuvReadback
+            : pboReadback;
+    }
+
+    private void capture(int width, int height) {
+        PboReadback readback = activeReadback();
+        if (readback != null) {
+            readback.start();
+        } else {
+            capturedFrames.addLast(captureFrameBuffer(width, height));
+        }
+    }
+
+    private CapturedFrame captureFrameBuffer(int width, int height) {
+        CapturedFrame frame = framePool.acquire(captureLayout);
+        Gdx.gl.glFinish();
+        Gdx.gl20.glPixelStorei(GL20.GL_PACK_ALIGNMENT, 1);
+        Gdx.gl20.glReadPixels(
+            0,
+            0,
+            width,
+            height,
+            GL20.GL_RGBA,
+            GL20.GL_UNSIGNED_BYTE,
+            frame.pixels()
+        );
+        return frame;
+    }
+}
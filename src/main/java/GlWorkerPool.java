@@ -0,0 +1,401 @@
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GLCapabilities;
+
+/**
+ * Renders batch jobs on several threads at once. With the GL backend each
+ * extra worker gets a hidden GLFW window whose context shares objects with
+ * the application's, plus its own {@link App} (polygon batch, skeleton
+ * renderer, frame buffer and frame renderer); the calling thread keeps
+ * working on the primary context. Workers pull from one queue ordered by
+ * estimated texture memory, largest first, and a job only starts while its
+ * estimate fits in the free video memory the driver reports, if it reports
+ * any.
+ *
+ * <p>Every worker draws through the one process-wide {@code Gdx.gl}, whose
+ * {@code float[]} and {@code int[]} overloads stage data in an unsynchronized
+ * scratch buffer, and libGDX keeps GL objects in unsynchronized static
+ * registries. Workers therefore create and free GL objects, and upload
+ * matrices and other array uniforms, only under {@code App.SHARED_RESOURCES}.
+ * New draw code on worker threads must do the same or pass direct buffers.
+ *
+ * <p>With {@link ShardLeases} every job is claimed before it runs, so other
+ * processes working on the same batch skip it. Folders held by a live
+ * process are looked at again until they are finished or their lease
+ * expires and is taken over.
+ */
+final class GlWorkerPool {
+
+    // GL_NVX_gpu_memory_info and GL_ATI_meminfo queries, both in KB.
+    private static final int GPU_MEMORY_INFO_CURRENT_AVAILABLE_VIDMEM_NVX = 0x9049;
+    private static final int TEXTURE_FREE_MEMORY_ATI = 0x87FC;
+    // Share of the reported free memory that jobs may claim.
+    private static final double MEMORY_HEADROOM = 0.8;
+
+    private final App primary;
+    private final List<App.CliArguments> jobs;
+    private final int workers;
+    private final boolean gl;
+    private final ShardLeases leases;
+    private final ConcurrentLinkedQueue<Task> held = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger rendered = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicReference<Throwable> fatal = new AtomicReference<>();
+
+    GlWorkerPool(
+        App primary,
+        List<App.CliArguments> jobs,
+        int requested,
+        ShardLeases leases
+    ) {
+        this.primary = primary;
+        this.jobs = jobs;
+        this.leases = leases;
+        this.gl = jobs.get(0).rendererBackend() == App.CliArguments.RendererBackend.GL;
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.workers = Math.max(1, Math.min(requested, Math.min(jobs.size(), cores)));
+        if (workers < requested) {
+            App.logInfo(
+                "Using " + workers + " of " + requested + " worker(s) for " +
+                    jobs.size() + " job(s) on " + cores + " core(s)."
+            );
+        }
+    }
+
+    /** Runs every job and returns how many failed. Call on the GL thread. */
+    int run() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            tasks.add(new Task(jobs.get(i), i + 1, estimateKilobytes(jobs.get(i))));
+        }
+        tasks.sort(Comparator.comparingLong((Task task) -> task.kilobytes).reversed());
+        ConcurrentLinkedQueue<Task> queue = new ConcurrentLinkedQueue<>(tasks);
+        long freeKilobytes = gl ? freeVideoMemoryKilobytes() : -1;
+        MemoryBudget budget = new MemoryBudget(
+            freeKilobytes > 0 ? (long) (freeKilobytes * MEMORY_HEADROOM) : -1
+        );
+
+        long primaryContext = gl ? GLFW.glfwGetCurrentContext() : 0L;
+        List<Long> windows = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try {
+            for (int i = 1; i < workers; i++) {
+                long window = 0L;
+                if (gl) {
+                    window = createSharedWindow(primaryContext);
+                    if (window == 0L) {
+                        App.logWarn(
+                            "Unable to create GL worker context " + i + "; continuing with " +
+                                i + " worker(s)."
+                        );
+                        break;
+                    }
+                    windows.add(window);
+                }
+                long context = window;
+                Thread thread = new Thread(
+                    () -> work(context, queue, budget),
+                    "gl-worker-" + i
+                );
+                threads.add(thread);
+                thread.start();
+            }
+            App.logInfo(
+                String.format(
+                    Locale.ROOT,
+                    "Rendering %d job(s) on %d worker(s)%s",
+                    jobs.size(),
+                    threads.size() + 1,
+                    freeKilobytes > 0
+                        ? String.format(
+                            Locale.ROOT,
+                            ", %.0f MB of %.0f MB free video memory for textures",
+                            budget.limit / 1024.0,
+                            freeKilobytes / 1024.0
+                        )
+                        : ""
+                )
+            );
+            drain(primary, queue, budget);
+        } catch (RuntimeException | Error ex) {
+            fatal.compareAndSet(null, ex);
+        } finally {
+            for (Thread thread : threads) {
+                joinUninterruptibly(thread);
+            }
+            for (long window : windows) {
+                GLFW.glfwDestroyWindow(window);
+            }
+        }
+
+        if (leases != null) {
+            App.logInfo(
+                rendered.get() + " of " + jobs.size() +
+                    " job(s) rendered by this process; the rest were finished elsewhere or earlier."
+            );
+        }
+        Throwable error = fatal.get();
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        return failed.get();
+    }
+
+    private void work(long window, ConcurrentLinkedQueue<Task> queue, MemoryBudget budget) {
+        App worker = null;
+        try {
+            if (gl) {
+                GLFW.glfwMakeContextCurrent(window);
+                GL.createCapabilities();
+            }
+            worker = new App(jobs.get(0));
+            drain(worker, queue, budget);
+        } catch (RuntimeException | Error ex) {
+            App.logError("Worker " + Thread.currentThread().getName() + " stopped: " + ex.getMessage(), ex);
+            fatal.compareAndSet(null, ex);
+        } finally {
+            if (worker != null) {
+                worker.dispose();
+            }
+            if (gl) {
+                GL.setCapabilities(null);
+                GLFW.glfwMakeContextCurrent(0L);
+            }
+        }
+    }
+
+    private void drain(App worker, ConcurrentLinkedQueue<Task> queue, MemoryBudget budget) {
+        while (fatal.get() == null) {
+            Task task = queue.poll();
+            if (task == null) {
+                if (!requeueHeld(queue)) {
+                    return;
+                }
+                continue;
+            }
+            ShardLeases.Lease lease = null;
+            if (leases != null) {
+                lease = claim(task);
+                if (lease == null) {
+                    continue;
+                }
+            }
+            budget.acquire(task.kilobytes);
+            boolean succeeded;
+            try {
+                succeeded = worker.runBatchJob(task.job, task.number, jobs.size());
+            } finally {
+                budget.release(task.kilobytes);
+            }
+            rendered.incrementAndGet();
+            if (!succeeded) {
+                failed.incrementAndGet();
+            }
+            if (lease != null) {
+                finish(lease, succeeded, task);
+            }
+        }
+    }
+
+    private ShardLeases.Lease claim(Task task) {
+        Path folder = task.folder();
+        try {
+            ShardLeases.Lease lease = leases.tryClaim(folder);
+            if (lease == null && !leases.isFinished(folder)) {
+                held.add(task);
+            }
+            return lease;
+        } catch (IOException ex) {
+            App.logWarn("Unable to claim " + folder + ": " + ex.getMessage());
+            held.add(task);
+            return null;
+        }
+    }
+
+    private static void finish(ShardLeases.Lease lease, boolean succeeded, Task task) {
+        try {
+            if (succeeded) {
+                lease.complete();
+            } else {
+                lease.fail("Batch job " + task.number + " failed; see the log of the process that ran it.");
+            }
+        } catch (IOException ex) {
+            App.logWarn("Unable to record the result for " + task.folder() + ": " + ex.getMessage());
+        }
+    }
+
+    // Folders held by other processes are retried after a pause, until they
+    // are finished elsewhere or their lease expires and can be taken over.
+    private boolean requeueHeld(ConcurrentLinkedQueue<Task> queue) {
+        if (leases == null || held.isEmpty()) {
+            return false;
+        }
+        try {
+            Thread.sleep(leases.retryMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        Task task;
+        while ((task = held.poll()) != null) {
+            queue.add(task);
+        }
+        return true;
+    }
+
+    // Window creation must happen on the main thread; only making the
+    // context current is done by the worker.
+    private static long createSharedWindow(long share) {
+        GLFW.glfwDefaultWindowHints();
+        GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
+        GLFW.glfwWindowHint(GLFW.GLFW_FOCUSED, GLFW.GLFW_FALSE);
+        long window = GLFW.glfwCreateWindow(16, 16, "", 0L, share);
+        GLFW.glfwDefaultWindowHints();
+        return window;
+    }
+
+    private static long freeVideoMemoryKilobytes() {
+        GLCapabilities caps;
+        try {
+            caps = GL.getCapabilities();
+        } catch (IllegalStateException ex) {
+            return -1;
+        }
+        if (caps.GL_NVX_gpu_memory_info) {
+            return GL11.glGetInteger(GPU_MEMORY_INFO_CURRENT_AVAILABLE_VIDMEM_NVX);
+        }
+        if (caps.GL_ATI_meminfo) {
+            int[] values = new int[4];
+            GL11.glGetIntegerv(TEXTURE_FREE_MEMORY_ATI, values);
+            return values[0];
+        }
+        return -1;
+    }
+
+    // Texture pages as RGBA (plus a third for mipmaps) and, when the size is
+    // fixed, the colour and depth attachments of the frame buffer.
+    private static long estimateKilobytes(App.CliArguments job) {
+        long bytes = 0;
+        try {
+            TextureAtlas.TextureAtlasData data = new TextureAtlas.TextureAtlasData(
+                Gdx.files.absolute(job.atlasPath().toString()),
+                Gdx.files.absolute(job.textureDirectory().toString()),
+                false
+            );
+            for (TextureAtlas.TextureAtlasData.Page page : data.getPages()) {
+                long width = (long) page.width;
+                long height = (long) page.height;
+                if (width <= 0 || height <= 0) {
+                    int[] size = pngSize(page.textureFile);
+                    width = size[0];
+                    height = size[1];
+                }
+                long pageBytes = width * height * 4;
+                bytes += page.useMipMaps ? pageBytes * 4 / 3 : pageBytes;
+            }
+        } catch (RuntimeException | IOException ex) {
+            return 0;
+        }
+        if (job.overrideWidth() != null && job.overrideHeight() != null) {
+            bytes += (long) job.overrideWidth() * job.overrideHeight() * 8;
+        }
+        return bytes / 1024;
+    }
+
+    private static int[] pngSize(FileHandle file) throws IOException {
+        try (DataInputStream in = new DataInputStream(file.read())) {
+            byte[] header = new byte[16];
+            in.readFully(header);
+            return new int[] { in.readInt(), in.readInt() };
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task {
+
+        private final App.CliArguments job;
+        private final int number;
+        private final long kilobytes;
+
+        private Task(App.CliArguments job, int number, long kilobytes) {
+            this.job = job;
+            this.number = number;
+            this.kilobytes = kilobytes;
+        }
+
+        Path folder() {
+            return job.folder() != null ? job.folder() : job.atlasPath().getParent();
+        }
+    }
+
+    /** Video memory claimed by running jobs; unlimited when the limit is not positive. */
+    private static final class MemoryBudget {
+
+        private final long limit;
+        private long used;
+        private int running;
+
+        private MemoryBudget(long limit) {
+            this.limit = limit;
+        }
+
+        // A job larger than the whole budget still runs, alone.
+        synchronized void acquire(long kilobytes) {
+            if (limit <= 0) {
+                return;
+            }
+            boolean interrupted = false;
+            while (running > 0 && used + kilobytes > limit) {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            used += kilobytes;
+            running++;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized void release(long kilobytes) {
+            if (limit <= 0) {
+                return;
+            }
+            used -= kilobytes;
+            running--;
+            notifyAll();
+        }
+    }
+}
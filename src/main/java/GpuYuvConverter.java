@@ -0,0 +1,148 @@
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+
+final class GpuYuvConverter {
+
+    private static final String VERTEX_SHADER =
+        "attribute vec4 a_position;\n" +
+        "void main() {\n" +
+        "    gl_Position = a_position;\n" +
+        "}\n";
+
+    // Packs I420 planes into an RGBA target that is width/4 texels wide so a
+    // plain glReadPixels of the target yields Y, then U, then V contiguously.
+    private static final String FRAGMENT_SHADER =
+        "#ifdef GL_ES\n" +
+        "precision highp float;\n" +
+        "#endif\n" +
+        "uniform sampler2D u_texture;\n" +
+        "uniform vec2 u_size;\n" +
+        "const vec3 Y_COEF = vec3(0.256788, 0.504129, 0.097906);\n" +
+        "const vec3 U_COEF = vec3(-0.148223, -0.290993, 0.439216);\n" +
+        "const vec3 V_COEF = vec3(0.439216, -0.367788, -0.071427);\n" +
+        "vec3 fetch(float x, float y) {\n" +
+        "    return texture2D(u_texture, (vec2(x, y) + 0.5) / u_size).rgb;\n" +
+        "}\n" +
+        "float luma(float x, float y) {\n" +
+        "    return dot(fetch(x, y), Y_COEF) + 16.0 / 255.0;\n" +
+        "}\n" +
+        "float chroma(float cx, float cy, vec3 coef) {\n" +
+        "    float x = cx * 2.0;\n" +
+        "    float y = cy * 2.0;\n" +
+        "    vec3 sum = fetch(x, y) + fetch(x + 1.0, y) +\n" +
+        "        fetch(x, y + 1.0) + fetch(x + 1.0, y + 1.0);\n" +
+        "    return dot(sum * 0.25, coef) + 128.0 / 255.0;\n" +
+        "}\n" +
+        "void main() {\n" +
+        "    vec2 texel = floor(gl_FragCoord.xy);\n" +
+        "    float width = u_size.x;\n" +
+        "    float height = u_size.y;\n" +
+        "    if (texel.y < height) {\n" +
+        "        float x = texel.x * 4.0;\n" +
+        "        gl_FragColor = vec4(\n" +
+        "            luma(x, texel.y),\n" +
+        "            luma(x + 1.0, texel.y),\n" +
+        "            luma(x + 2.0, texel.y),\n" +
+        "            luma(x + 3.0, texel.y));\n" +
+        "    } else {\n" +
+        "        float row = texel.y - height;\n" +
+        "        float planeRows = height * 0.25;\n" +
+        "        vec3 coef = U_COEF;\n" +
+        "        if (row >= planeRows) {\n" +
+        "            row -= planeRows;\n" +
+        "            coef = V_COEF;\n" +
+        "        }\n" +
+        "        float rowTexels = width / 8.0;\n" +
+        "        float cy = row * 2.0 + (texel.x >= rowTexels ? 1.0 : 0.0);\n" +
+        "        float cx = mod(texel.x, rowTexels) * 4.0;\n" +
+        "        gl_FragColor = vec4(\n" +
+        "            chroma(cx, cy, coef),\n" +
+        "            chroma(cx + 1.0, cy, coef),\n" +
+        "            chroma(cx + 2.0, cy, coef),\n" +
+        "            chroma(cx + 3.0, cy, coef));\n" +
+        "    }\n" +
+        "}\n";
+
+    private final int width;
+    private final int height;
+    private final ShaderProgram shader;
+    private final Mesh quad;
+    private final FrameBuffer target;
+
+    GpuYuvConverter(int width, int height) {
+        if (!supports(width, height)) {
+            throw new IllegalArgumentException(
+                "GPU YUV conversion needs a width divisible by 8 and a height divisible by 4."
+            );
+        }
+        this.width = width;
+        this.height = height;
+        this.shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        if (!shader.isCompiled()) {
+            String log = shader.getLog();
+            shader.dispose();
+            throw new IllegalStateException(
+                "Unable to compile the YUV conversion shader: " + log
+            );
+        }
+        this.quad = new Mesh(
+            true,
+            4,
+            6,
+            new VertexAttribute(
+                VertexAttributes.Usage.Position,
+                2,
+                "a_position"
+            )
+        );
+        quad.setVertices(new float[] { -1f, -1f, 1f, -1f, 1f, 1f, -1f, 1f });
+        quad.setIndices(new short[] { 0, 1, 2, 2, 3, 0 });
+        this.target = new FrameBuffer(
+            Pixmap.Format.RGBA8888,
+            targetWidth(),
+            targetHeight(),
+            false
+        );
+    }
+
+    static boolean supports(int width, int height) {
+        return width % 8 == 0 && height % 4 == 0;
+    }
+
+    int targetWidth() {
+        return width / 4;
+    }
+
+    int targetHeight() {
+        return height * 3 / 2;
+    }
+
+    void begin(Texture source) {
+        target.begin();
+        Gdx.gl.glViewport(0, 0, targetWidth(), targetHeight());
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        Gdx.gl.glDisable(GL20.GL_SCISSOR_TEST);
+        source.bind(0);
+        shader.bind();
+        shader.setUniformi("u_texture", 0);
+        shader.setUniformf("u_size", width, height);
+        quad.render(shader, GL20.GL_TRIANGLES);
+    }
+
+    void end() {
+        target.end();
+    }
+
+    void dispose() {
+        target.dispose();
+        quad.dispose();
+        shader.dispose();
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * File-based leases shared by {@link ShardLeases} and {@link TranscodeQueue}.
+ * A lease is a file whose modification time its holder renews every third
+ * of the lease time. A file that has not been renewed for a whole lease is
+ * stale, and its holder is presumed dead.
+ *
+ * <p>Staleness compares file times with this process's clock, so machines
+ * sharing a directory must agree on the time to well within the lease.
+ */
+final class LeaseHeartbeat implements AutoCloseable {
+
+    private final String threadName;
+    private final long leaseMillis;
+    private final LongSupplier clock;
+    private final String owner;
+    private final Set<Path> held = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService heartbeat;
+
+    LeaseHeartbeat(String threadName, long leaseMillis) {
+        this(threadName, leaseMillis, System::currentTimeMillis);
+    }
+
+    LeaseHeartbeat(String threadName, long leaseMillis, LongSupplier clock) {
+        this.threadName = threadName;
+        this.leaseMillis = leaseMillis;
+        this.clock = clock;
+        this.owner = ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    /** This process as recorded in lease files ({@code pid@host}). */
+    String owner() {
+        return owner;
+    }
+
+    long leaseMillis() {
+        return leaseMillis;
+    }
+
+    long now() {
+        return clock.getAsLong();
+    }
+
+    /** Sets the file's time to now without holding it. */
+    void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(now()));
+    }
+
+    /** Touches {@code file} and keeps renewing it until it is released. */
+    void hold(Path file) throws IOException {
+        touch(file);
+        held.add(file);
+        startHeartbeat();
+    }
+
+    void release(Path file) {
+        held.remove(file);
+    }
+
+    List<Path> held() {
+        return new ArrayList<>(held);
+    }
+
+    /** True once {@code file} has missed a whole lease, or is gone. */
+    boolean isStale(Path file) throws IOException {
+        try {
+            return now() - Files.getLastModifiedTime(file).toMillis() > leaseMillis;
+        } catch (NoSuchFileException ex) {
+            return true;
+        }
+    }
+
+    /** Renews every held file; the heartbeat calls this periodically. */
+    void renew() {
+        for (Path file : held) {
+            try {
+                touch(file);
+            } catch (NoSuchFileException ex) {
+                // Taken over or recovered by another process; stop renewing.
+                held.remove(file);
+                App.logWarn("Lease " + file + " is gone; it was taken over after expiring.");
+            } catch (IOException ex) {
+                App.logWarn("Unable to renew lease " + file + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    private synchronized void startHeartbeat() {
+        if (heartbeat != null) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, leaseMillis / 3);
+        heartbeat.scheduleAtFixedRate(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+}
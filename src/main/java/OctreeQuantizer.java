@@ -0,0 +1,234 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Adaptive octree colour quantizer for one RGBA frame at a time. Colours are
+ * inserted into an 8-level octree that is reduced (deepest nodes first)
+ * whenever it holds more leaves than the palette allows, so the tree stays
+ * small however many distinct colours a frame has. Node storage is reused
+ * between frames.
+ */
+final class OctreeQuantizer {
+
+    private static final int DEPTH = 8;
+    private static final int ALPHA_THRESHOLD = 128;
+
+    private final int maxColors;
+    private final byte[] palette;
+
+    private int[] children = new int[0];
+    private long[] red = new long[0];
+    private long[] green = new long[0];
+    private long[] blue = new long[0];
+    private int[] count = new int[0];
+    private boolean[] leaf = new boolean[0];
+    // Reducible list per level while building, palette index once reduced.
+    private int[] link = new int[0];
+    private final int[] reducible = new int[DEPTH];
+    private int nodes;
+    private int freeList;
+    private int leafCount;
+    private int colors;
+    private boolean transparent;
+
+    /** @param maxColors opaque colours per frame; one more index is kept for transparency. */
+    OctreeQuantizer(int maxColors) {
+        if (maxColors < 1 || maxColors > 255) {
+            throw new IllegalArgumentException("maxColors must be between 1 and 255.");
+        }
+        this.maxColors = maxColors;
+        this.palette = new byte[(maxColors + 1) * 3];
+        grow(64);
+    }
+
+    /**
+     * Builds a palette for {@code pixels} and writes one palette index per
+     * pixel into {@code indices}. Pixels with alpha below 128 map to
+     * {@link #transparentIndex()}.
+     */
+    void quantize(ByteBuffer pixels, int width, int height, byte[] indices) {
+        reset();
+        int total = width * height;
+        for (int i = 0; i < total; i++) {
+            int offset = i * 4;
+            if ((pixels.get(offset + 3) & 0xff) < ALPHA_THRESHOLD) {
+                transparent = true;
+                continue;
+            }
+            insert(
+                pixels.get(offset) & 0xff,
+                pixels.get(offset + 1) & 0xff,
+                pixels.get(offset + 2) & 0xff
+            );
+            while (leafCount > maxColors) {
+                reduce();
+            }
+        }
+
+        colors = 0;
+        assignPalette(1);
+        if (colors == 0) {
+            colors = 1; // Fully transparent frame; keep a valid table.
+        }
+
+        byte transparentIndex = (byte) colors;
+        for (int i = 0; i < total; i++) {
+            int offset = i * 4;
+            if ((pixels.get(offset + 3) & 0xff) < ALPHA_THRESHOLD) {
+                indices[i] = transparentIndex;
+            } else {
+                indices[i] = (byte) lookup(
+                    pixels.get(offset) & 0xff,
+                    pixels.get(offset + 1) & 0xff,
+                    pixels.get(offset + 2) & 0xff
+                );
+            }
+        }
+    }
+
+    /** Number of opaque palette entries from the last {@link #quantize}. */
+    int colors() {
+        return colors;
+    }
+
+    boolean hasTransparency() {
+        return transparent;
+    }
+
+    int transparentIndex() {
+        return colors;
+    }
+
+    /** RGB triples; the entry at {@link #transparentIndex()} is black. */
+    byte[] palette() {
+        return palette;
+    }
+
+    private void reset() {
+        Arrays.fill(reducible, 0);
+        nodes = 1; // Node 0 is the "no child" sentinel.
+        freeList = 0;
+        leafCount = 0;
+        transparent = false;
+        Arrays.fill(palette, (byte) 0);
+        allocate(0);
+    }
+
+    private void insert(int r, int g, int b) {
+        int node = 1;
+        for (int level = 0; !leaf[node]; level++) {
+            int shift = 7 - level;
+            int index = (((r >> shift) & 1) << 2) |
+                (((g >> shift) & 1) << 1) |
+                ((b >> shift) & 1);
+            int child = children[node * 8 + index];
+            if (child == 0) {
+                child = allocate(level + 1);
+                children[node * 8 + index] = child;
+            }
+            node = child;
+        }
+        red[node] += r;
+        green[node] += g;
+        blue[node] += b;
+        count[node]++;
+    }
+
+    private int allocate(int level) {
+        int node;
+        if (freeList != 0) {
+            node = freeList;
+            freeList = link[node];
+        } else {
+            if (nodes == leaf.length) {
+                grow(leaf.length * 2);
+            }
+            node = nodes++;
+        }
+        Arrays.fill(children, node * 8, node * 8 + 8, 0);
+        red[node] = 0;
+        green[node] = 0;
+        blue[node] = 0;
+        count[node] = 0;
+        leaf[node] = level == DEPTH;
+        if (leaf[node]) {
+            leafCount++;
+        } else {
+            link[node] = reducible[level];
+            reducible[level] = node;
+        }
+        return node;
+    }
+
+    // Merges the children of the deepest inner node into it. Deeper inner
+    // nodes would still be on a deeper list, so all its children are leaves.
+    private void reduce() {
+        int level = DEPTH - 1;
+        while (reducible[level] == 0) {
+            level--;
+        }
+        int node = reducible[level];
+        reducible[level] = link[node];
+
+        int merged = 0;
+        for (int i = 0; i < 8; i++) {
+            int child = children[node * 8 + i];
+            if (child == 0) {
+                continue;
+            }
+            red[node] += red[child];
+            green[node] += green[child];
+            blue[node] += blue[child];
+            count[node] += count[child];
+            children[node * 8 + i] = 0;
+            link[child] = freeList;
+            freeList = child;
+            merged++;
+        }
+        leaf[node] = true;
+        leafCount -= merged - 1;
+    }
+
+    private void assignPalette(int node) {
+        if (leaf[node]) {
+            if (count[node] == 0) {
+                return;
+            }
+            link[node] = colors;
+            palette[colors * 3] = (byte) (red[node] / count[node]);
+            palette[colors * 3 + 1] = (byte) (green[node] / count[node]);
+            palette[colors * 3 + 2] = (byte) (blue[node] / count[node]);
+            colors++;
+            return;
+        }
+        for (int i = 0; i < 8; i++) {
+            int child = children[node * 8 + i];
+            if (child != 0) {
+                assignPalette(child);
+            }
+        }
+    }
+
+    // Every opaque pixel was inserted, so its path always ends in a leaf.
+    private int lookup(int r, int g, int b) {
+        int node = 1;
+        for (int level = 0; !leaf[node]; level++) {
+            int shift = 7 - level;
+            node = children[node * 8 +
+                ((((r >> shift) & 1) << 2) |
+                    (((g >> shift) & 1) << 1) |
+                    ((b >> shift) & 1))];
+        }
+        return link[node];
+    }
+
+    private void grow(int capacity) {
+        children = Arrays.copyOf(children, capacity * 8);
+        red = Arrays.copyOf(red, capacity);
+        green = Arrays.copyOf(green, capacity);
+        blue = Arrays.copyOf(blue, capacity);
+        count = Arrays.copyOf(count, capacity);
+        leaf = Arrays.copyOf(leaf, capacity);
+        link = Arrays.copyOf(link, capacity);
+    }
+}
@@ -0,0 +1,155 @@
+import java.nio.ByteBuffer;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GLCapabilities;
+
+final class PboReadback {
+
+    private static final long FENCE_WAIT_NANOS = 1_000_000_000L;
+
+    private final int width;
+    private final int height;
+    private final int frameBytes;
+    private final int[] buffers;
+    private final long[] fences;
+    private int head;
+    private int pending;
+    private ByteBuffer mapped;
+
+    PboReadback(int width, int height, int depth) {
+        if (depth < 2) {
+            throw new IllegalArgumentException(
+                "PBO readback needs at least two buffers."
+            );
+        }
+        this.width = width;
+        this.height = height;
+        this.frameBytes = width * height * 4;
+        this.buffers = new int[depth];
+        this.fences = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            buffers[i] = GL15.glGenBuffers();
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[i]);
+            GL15.glBufferData(
+                GL21.GL_PIXEL_PACK_BUFFER,
+                frameBytes,
+                GL15.GL_STREAM_READ
+            );
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    static boolean isSupported() {
+        GLCapabilities caps;
+        try {
+            caps = GL.getCapabilities();
+        } catch (IllegalStateException ex) {
+            return false;
+        }
+        boolean pbo = caps.OpenGL21 || caps.GL_ARB_pixel_buffer_object;
+        boolean sync = caps.OpenGL32 || caps.GL_ARB_sync;
+        return pbo && sync;
+    }
+
+    int depth() {
+        return buffers.length;
+    }
+
+    int pending() {
+        return pending;
+    }
+
+    boolean isFull() {
+        return pending == buffers.length;
+    }
+
+    void start() {
+        if (isFull()) {
+            throw new IllegalStateException("All readback buffers are in use.");
+        }
+        int slot = head;
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        GL11.glPixelStorei(GL11.GL_PACK_ALIGNMENT, 1);
+        GL11.glReadPixels(
+            0,
+            0,
+            width,
+            height,
+            GL11.GL_RGBA,
+            GL11.GL_UNSIGNED_BYTE,
+            0L
+        );
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        fences[slot] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        head = (head + 1) % buffers.length;
+        pending++;
+    }
+
+    void finish(ByteBuffer target) {
+        if (pending == 0) {
+            throw new IllegalStateException("No readback in flight.");
+        }
+        int slot = (head - pending + buffers.length) % buffers.length;
+        awaitFence(fences[slot]);
+        GL32.glDeleteSync(fences[slot]);
+        fences[slot] = 0L;
+
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[slot]);
+        mapped = GL15.glMapBuffer(
+            GL21.GL_PIXEL_PACK_BUFFER,
+            GL15.GL_READ_ONLY,
+            frameBytes,
+            mapped
+        );
+        if (mapped == null) {
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+            throw new IllegalStateException("Unable to map readback buffer.");
+        }
+        try {
+            mapped.rewind();
+            target.rewind();
+            target.put(mapped);
+            target.rewind();
+        } finally {
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_PACK_BUFFER);
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        }
+        pending--;
+    }
+
+    void dispose() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (fences[i] != 0L) {
+                GL32.glDeleteSync(fences[i]);
+                fences[i] = 0L;
+            }
+            if (buffers[i] != 0) {
+                GL15.glDeleteBuffers(buffers[i]);
+                buffers[i] = 0;
+            }
+        }
+        pending = 0;
+    }
+
+    private void awaitFence(long fence) {
+        int flags = GL32.GL_SYNC_FLUSH_COMMANDS_BIT;
+        while (true) {
+            int status = GL32.glClientWaitSync(fence, flags, FENCE_WAIT_NANOS);
+            if (
+                status == GL32.GL_ALREADY_SIGNALED ||
+                status == GL32.GL_CONDITION_SATISFIED
+            ) {
+                return;
+            }
+            if (status == GL32.GL_WAIT_FAILED) {
+                throw new IllegalStateException(
+                    "Waiting on the readback fence failed."
+                );
+            }
+            flags = 0;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+final class PixelKernelBenchmark {
+
+    private static final int DEFAULT_SIZE = 4096;
+    private static final int DEFAULT_ITERATIONS = 10;
+
+    private PixelKernelBenchmark() {}
+
+    static void run(String[] args, PrintStream out) {
+        int width = DEFAULT_SIZE;
+        int height = DEFAULT_SIZE;
+        int iterations = DEFAULT_ITERATIONS;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--width":
+                    width = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--height":
+                    height = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown benchmark argument: " + arg
+                    );
+            }
+        }
+        width = Math.max(2, width & ~1);
+        height = Math.max(2, height & ~1);
+        iterations = Math.max(1, iterations);
+
+        List<PixelKernels> candidates = new ArrayList<>();
+        candidates.add(ScalarPixelKernels.INSTANCE);
+        PixelKernels vector = PixelKernels.loadVector();
+        if (vector != null) {
+            candidates.add(vector);
+        } else {
+            out.println(
+                "Vector kernels unavailable (run on JDK 17+ with --add-modules jdk.incubator.vector); benchmarking scalar only."
+            );
+        }
+
+        byte[] rgba = new byte[width * height * 4];
+        new Random(42).nextBytes(rgba);
+        byte[] luma = new byte[width];
+        byte[] chromaU = new byte[width / 2];
+        byte[] chromaV = new byte[width / 2];
+        byte[] upperRow = new byte[width * 4];
+        byte[] lowerRow = new byte[width * 4];
+        double megabytes = rgba.length / (1024.0 * 1024.0);
+
+        out.println(
+            String.format(
+                Locale.ROOT,
+                "Pixel kernels on %dx%d RGBA (%.1f MB per pass, %d pass(es))",
+                width,
+                height,
+                megabytes,
+                iterations
+            )
+        );
+        out.println(
+            String.format(
+                Locale.ROOT,
+                "%-8s %12s %12s",
+                "kernels",
+                "luma MB/s",
+                "chroma MB/s"
+            )
+        );
+        for (PixelKernels kernels : candidates) {
+            int w = width;
+            int h = height;
+            double y420 = measure(iterations, megabytes, () -> {
+                for (int y = 0; y < h; y++) {
+                    kernels.rgbaToLuma(rgba, y * w * 4, luma, 0, w);
+                }
+            });
+            double c420 = measure(iterations, megabytes, () -> {
+                for (int y = 0; y < h; y += 2) {
+                    System.arraycopy(rgba, y * w * 4, upperRow, 0, w * 4);
+                    System.arraycopy(rgba, (y + 1) * w * 4, lowerRow, 0, w * 4);
+                    kernels.rgbaToChroma(
+                        upperRow,
+                        lowerRow,
+                        0,
+                        chromaU,
+                        chromaV,
+                        0,
+                        w
+                    );
+                }
+            });
+            out.println(
+                String.format(
+                    Locale.ROOT,
+                    "%-8s %12.0f %12.0f",
+                    kernels.name(),
+                    y420,
+                    c420
+                )
+            );
+        }
+    }
+
+    private static double measure(
+        int iterations,
+        double megabytes,
+        Runnable pass
+    ) {
+        for (int i = 0; i < Math.min(3, iterations); i++) {
+            pass.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            pass.run();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        return seconds > 0 ? (megabytes * iterations) / seconds : 0;
+    }
+
+    private static String value(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Expected a value after " + flag);
+        }
+        return args[index];
+    }
+}
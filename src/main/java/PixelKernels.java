@@ -0,0 +1,56 @@
+import java.util.Locale;
+
+interface PixelKernels {
+
+    String name();
+
+    void rgbaToLuma(byte[] src, int srcOffset, byte[] dst, int dstOffset, int pixels);
+
+    void rgbaToChroma(
+        byte[] row0,
+        byte[] row1,
+        int srcOffset,
+        byte[] u,
+        byte[] v,
+        int dstOffset,
+        int pixels
+    );
+
+    static PixelKernels select(String mode) {
+        String normalized = mode == null
+            ? "auto"
+            : mode.toLowerCase(Locale.ROOT).trim();
+        switch (normalized) {
+            case "scalar":
+                return ScalarPixelKernels.INSTANCE;
+            case "vector":
+                PixelKernels vector = loadVector();
+                if (vector == null) {
+                    throw new IllegalArgumentException(
+                        "Vector kernels are unavailable; run on JDK 17+ with --add-modules jdk.incubator.vector."
+                    );
+                }
+                return vector;
+            case "auto":
+                PixelKernels preferred = loadVector();
+                return preferred != null ? preferred : ScalarPixelKernels.INSTANCE;
+            default:
+                throw new IllegalArgumentException(
+                    "--pixel-kernels expects 'auto', 'scalar', or 'vector'."
+                );
+        }
+    }
+
+    static PixelKernels loadVector() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            return (PixelKernels) Class.forName("VectorPixelKernels")
+                .getDeclaredConstructor()
+                .newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return null;
+        }
+    }
+}
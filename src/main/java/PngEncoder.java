@@ -0,0 +1,565 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Minimal RGBA8888 PNG writer with a configurable deflate level and row
+ * filter. Rows are read straight from the frame buffer without copying the
+ * whole image.
+ */
+final class PngEncoder {
+
+    enum Filter {
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        ADAPTIVE;
+
+        static Filter parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException(
+                    "PNG filter must be one of none, sub, up, average, paeth, adaptive.",
+                    ex
+                );
+            }
+        }
+    }
+
+    private static final byte[] SIGNATURE = {
+        (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n',
+    };
+    private static final int IDAT_CHUNK_SIZE = 64 * 1024;
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final int PARALLEL_BLOCK_BYTES = 256 * 1024;
+    private static final int ADLER_BASE = 65521;
+
+    private final int level;
+    private final Filter filter;
+
+    PngEncoder(int level, Filter filter) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(
+                "PNG compression level must be between 0 and 9."
+            );
+        }
+        this.level = level;
+        this.filter = filter;
+    }
+
+    int level() {
+        return level;
+    }
+
+    Filter filter() {
+        return filter;
+    }
+
+    long write(Path path, ByteBuffer rgba, int width, int height)
+        throws IOException {
+        return write(path, rgba, width, height, null);
+    }
+
+    /**
+     * Writes the image, compressing independent row blocks on
+     * {@code executor} when one is given.
+     */
+    long write(
+        Path path,
+        ByteBuffer rgba,
+        int width,
+        int height,
+        ExecutorService executor
+    ) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (
+            OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(path),
+                IDAT_CHUNK_SIZE
+            )
+        ) {
+            if (executor != null) {
+                writeParallel(out, rgba, width, height, executor);
+            } else {
+                write(out, rgba, width, height);
+            }
+        }
+        return Files.size(path);
+    }
+
+    void write(OutputStream out, ByteBuffer rgba, int width, int height)
+        throws IOException {
+        try (RowWriter rows = openRows(out, width, height)) {
+            rows.write(rgba, height);
+            rows.finish();
+        }
+    }
+
+    /**
+     * Starts an image whose rows are supplied incrementally, so only the
+     * rows being written need to be in memory.
+     */
+    RowWriter openRows(OutputStream out, int width, int height)
+        throws IOException {
+        return new RowWriter(out, width, height);
+    }
+
+    /**
+     * pigz-style IDAT: rows are split into blocks that are filtered and raw
+     * deflated concurrently. Every block but the last ends with a sync flush
+     * so the streams concatenate into one valid deflate stream; the zlib
+     * header and the combined Adler-32 are written around them.
+     */
+    void writeParallel(
+        OutputStream out,
+        ByteBuffer rgba,
+        int width,
+        int height,
+        ExecutorService executor
+    ) throws IOException {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        int rowsPerBlock = Math.max(1, PARALLEL_BLOCK_BYTES / (rowBytes + 1));
+        List<Future<CompressedBlock>> blocks = new ArrayList<>();
+        for (int first = 0; first < height; first += rowsPerBlock) {
+            int start = first;
+            int rows = Math.min(rowsPerBlock, height - first);
+            boolean last = first + rows == height;
+            blocks.add(
+                executor.submit(() ->
+                    compressBlock(rgba, width, start, rows, last)
+                )
+            );
+        }
+
+        out.write(SIGNATURE);
+        writeHeader(out, width, height);
+        try (ChunkOutputStream idat = new ChunkOutputStream(out, "IDAT")) {
+            idat.write(0x78);
+            idat.write(zlibLevelFlags());
+            long adler = 1L;
+            for (Future<CompressedBlock> future : blocks) {
+                CompressedBlock block = await(future, blocks);
+                idat.write(block.data, 0, block.length);
+                adler = combineAdler(adler, block.adler, block.rawLength);
+            }
+            byte[] trailer = new byte[4];
+            putInt(trailer, 0, (int) adler);
+            idat.write(trailer, 0, trailer.length);
+        }
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    private CompressedBlock compressBlock(
+        ByteBuffer rgba,
+        int width,
+        int firstRow,
+        int rows,
+        boolean last
+    ) {
+        int rowBytes = width * BYTES_PER_PIXEL;
+        ByteBuffer source = rgba.duplicate();
+        RowFilter filter = new RowFilter(this.filter, width);
+        if (firstRow > 0) {
+            source.position((firstRow - 1) * rowBytes);
+            filter.next(source);
+        }
+
+        Deflater deflater = new Deflater(level, true);
+        Adler32 adler = new Adler32();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+            rows * rowBytes / 2 + 64
+        );
+        byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        try {
+            for (int y = firstRow; y < firstRow + rows; y++) {
+                source.position(y * rowBytes);
+                byte[] line = filter.next(source);
+                adler.update(line, 0, line.length);
+                deflater.setInput(line, 0, line.length);
+                while (!deflater.needsInput()) {
+                    int n = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+                    compressed.write(buffer, 0, n);
+                }
+            }
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new CompressedBlock(
+            compressed.toByteArray(),
+            adler.getValue(),
+            (long) rows * (rowBytes + 1)
+        );
+    }
+
+    private int zlibLevelFlags() {
+        int levelBits;
+        if (level <= 1) {
+            levelBits = 0;
+        } else if (level <= 5) {
+            levelBits = 1;
+        } else if (level == 6) {
+            levelBits = 2;
+        } else {
+            levelBits = 3;
+        }
+        int header = (0x78 << 8) | (levelBits << 6);
+        header += 31 - header % 31;
+        return header & 0xff;
+    }
+
+    // zlib's adler32_combine: checksum of A followed by B from the two parts.
+    static long combineAdler(long adlerA, long adlerB, long lengthB) {
+        long remainder = lengthB % ADLER_BASE;
+        long sum1 = adlerA & 0xffff;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (adlerB & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adlerA >>> 16) & 0xffff) +
+            ((adlerB >>> 16) & 0xffff) +
+            ADLER_BASE -
+            remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= (ADLER_BASE << 1)) {
+            sum2 -= (ADLER_BASE << 1);
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return (sum2 << 16) | sum1;
+    }
+
+    private static CompressedBlock await(
+        Future<CompressedBlock> future,
+        List<Future<CompressedBlock>> all
+    ) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            all.forEach(pending -> pending.cancel(true));
+            throw new IOException("Interrupted while compressing PNG rows", ex);
+        } catch (ExecutionException ex) {
+            all.forEach(pending -> pending.cancel(true));
+            throw new IOException("Failed to compress PNG rows", ex.getCause());
+        }
+    }
+
+    static void writeHeader(OutputStream out, int width, int height)
+        throws IOException {
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bit depth
+        header[9] = 6; // colour type: truecolour with alpha
+        header[10] = 0; // deflate
+        header[11] = 0; // adaptive filtering
+        header[12] = 0; // no interlace
+        writeChunk(out, "IHDR", header, header.length);
+    }
+
+    static void writeChunk(OutputStream out, String type, byte[] data, int length)
+        throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] lengthBytes = new byte[4];
+        putInt(lengthBytes, 0, length);
+        out.write(lengthBytes);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /** Produces filtered scanlines (filter type byte followed by row data). */
+    static final class RowFilter {
+
+        private static final Filter[] CANDIDATES = {
+            Filter.NONE,
+            Filter.SUB,
+            Filter.UP,
+            Filter.AVERAGE,
+            Filter.PAETH,
+        };
+
+        private final Filter filter;
+        private final int rowBytes;
+        private byte[] previous;
+        private byte[] current;
+        private final byte[] output;
+        private final byte[] candidate;
+
+        RowFilter(Filter filter, int width) {
+            this.filter = filter;
+            this.rowBytes = width * BYTES_PER_PIXEL;
+            this.previous = new byte[rowBytes];
+            this.current = new byte[rowBytes];
+            this.output = new byte[rowBytes + 1];
+            this.candidate = filter == Filter.ADAPTIVE
+                ? new byte[rowBytes + 1]
+                : null;
+        }
+
+        /** Reads one row from {@code source} and returns the filtered line. */
+        byte[] next(ByteBuffer source) {
+            source.get(current, 0, rowBytes);
+            if (filter == Filter.ADAPTIVE) {
+                long best = Long.MAX_VALUE;
+                for (Filter option : CANDIDATES) {
+                    apply(option, candidate);
+                    long cost = cost(candidate);
+                    if (cost < best) {
+                        best = cost;
+                        System.arraycopy(candidate, 0, output, 0, output.length);
+                    }
+                }
+            } else {
+                apply(filter, output);
+            }
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+            return output;
+        }
+
+        private void apply(Filter type, byte[] line) {
+            byte[] cur = current;
+            byte[] prev = previous;
+            switch (type) {
+                case SUB:
+                    line[0] = 1;
+                    for (int i = 0; i < rowBytes; i++) {
+                        int left = i >= BYTES_PER_PIXEL ? cur[i - BYTES_PER_PIXEL] : 0;
+                        line[i + 1] = (byte) (cur[i] - left);
+                    }
+                    break;
+                case UP:
+                    line[0] = 2;
+                    for (int i = 0; i < rowBytes; i++) {
+                        line[i + 1] = (byte) (cur[i] - prev[i]);
+                    }
+                    break;
+                case AVERAGE:
+                    line[0] = 3;
+                    for (int i = 0; i < rowBytes; i++) {
+                        int left = i >= BYTES_PER_PIXEL
+                            ? cur[i - BYTES_PER_PIXEL] & 0xff
+                            : 0;
+                        int up = prev[i] & 0xff;
+                        line[i + 1] = (byte) (cur[i] - ((left + up) >>> 1));
+                    }
+                    break;
+                case PAETH:
+                    line[0] = 4;
+                    for (int i = 0; i < rowBytes; i++) {
+                        int left = i >= BYTES_PER_PIXEL
+                            ? cur[i - BYTES_PER_PIXEL] & 0xff
+                            : 0;
+                        int up = prev[i] & 0xff;
+                        int upLeft = i >= BYTES_PER_PIXEL
+                            ? prev[i - BYTES_PER_PIXEL] & 0xff
+                            : 0;
+                        line[i + 1] = (byte) (cur[i] - paeth(left, up, upLeft));
+                    }
+                    break;
+                case NONE:
+                default:
+                    line[0] = 0;
+                    System.arraycopy(cur, 0, line, 1, rowBytes);
+                    break;
+            }
+        }
+
+        private static int paeth(int a, int b, int c) {
+            int p = a + b - c;
+            int pa = Math.abs(p - a);
+            int pb = Math.abs(p - b);
+            int pc = Math.abs(p - c);
+            if (pa <= pb && pa <= pc) {
+                return a;
+            }
+            return pb <= pc ? b : c;
+        }
+
+        // Sum of absolute signed residuals, the usual PNG heuristic.
+        private static long cost(byte[] line) {
+            long sum = 0;
+            for (int i = 1; i < line.length; i++) {
+                sum += Math.abs((int) line[i]);
+            }
+            return sum;
+        }
+    }
+
+    /** Sequential writer for an image supplied a band of rows at a time. */
+    final class RowWriter implements Closeable {
+
+        private final OutputStream out;
+        private final int width;
+        private final int height;
+        private final RowFilter rows;
+        private final Deflater deflater = new Deflater(level);
+        private final ChunkOutputStream idat;
+        private final DeflaterOutputStream compressed;
+        private int written;
+
+        private RowWriter(OutputStream out, int width, int height)
+            throws IOException {
+            this.out = out;
+            this.width = width;
+            this.height = height;
+            this.rows = new RowFilter(filter, width);
+            out.write(SIGNATURE);
+            writeHeader(out, width, height);
+            this.idat = new ChunkOutputStream(out, "IDAT");
+            this.compressed = new DeflaterOutputStream(
+                idat,
+                deflater,
+                IDAT_CHUNK_SIZE
+            );
+        }
+
+        /** Appends {@code count} tightly packed rows from the start of {@code rgba}. */
+        void write(ByteBuffer rgba, int count) throws IOException {
+            if (written + count > height) {
+                throw new IllegalStateException(
+                    "PNG has " + height + " rows; got " + (written + count) + "."
+                );
+            }
+            ByteBuffer source = rgba.duplicate();
+            for (int y = 0; y < count; y++) {
+                source.position(y * width * BYTES_PER_PIXEL);
+                compressed.write(rows.next(source));
+            }
+            written += count;
+        }
+
+        void finish() throws IOException {
+            if (written != height) {
+                throw new IllegalStateException(
+                    "PNG has " + height + " rows; only " + written + " written."
+                );
+            }
+            compressed.finish();
+            idat.close();
+            writeChunk(out, "IEND", new byte[0], 0);
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    private static final class CompressedBlock {
+
+        private final byte[] data;
+        private final int length;
+        private final long adler;
+        private final long rawLength;
+
+        CompressedBlock(byte[] data, long adler, long rawLength) {
+            this.data = data;
+            this.length = data.length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+    }
+
+    /** Buffers deflate output and emits it as fixed-size chunks of one type. */
+    private static final class ChunkOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final String type;
+        private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+        private int count;
+
+        ChunkOutputStream(OutputStream out, String type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flushChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length)
+            throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flushChunk();
+                }
+                int n = Math.min(length, buffer.length - count);
+                System.arraycopy(data, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+        }
+
+        private void flushChunk() throws IOException {
+            if (count > 0) {
+                writeChunk(out, type, buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
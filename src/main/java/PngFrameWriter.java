@@ -0,0 +1,136 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes captured frames as PNG files on a small background pool. Each queued
+ * frame is retained until its file is written, and at most {@code depth}
+ * frames may be queued before {@link #write} blocks the caller.
+ */
+final class PngFrameWriter implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final PngEncoder encoder;
+    private final ExecutorService writers;
+    private final Semaphore slots;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private boolean finished;
+
+    PngFrameWriter(PngEncoder encoder, int threads, int depth) {
+        this.encoder = encoder;
+        this.slots = new Semaphore(Math.max(1, depth));
+        this.writers = Executors.newFixedThreadPool(
+            Math.max(1, threads),
+            runnable -> {
+                Thread thread = new Thread(
+                    runnable,
+                    "png-writer-" + THREAD_COUNTER.incrementAndGet()
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    void write(CapturedFrame frame, Path path) throws Exception {
+        rethrow();
+        slots.acquire();
+        frame.retain();
+        try {
+            writers.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        long bytes = encoder.write(
+                            path,
+                            frame.pixmap().getPixels(),
+                            frame.width(),
+                            frame.height()
+                        );
+                        frames.incrementAndGet();
+                        rawBytes.addAndGet((long) frame.width() * frame.height() * 4);
+                        writtenBytes.addAndGet(bytes);
+                    }
+                } catch (Throwable ex) {
+                    failure.compareAndSet(null, ex);
+                } finally {
+                    frame.release();
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException ex) {
+            frame.release();
+            slots.release();
+            throw ex;
+        }
+    }
+
+    void finish() throws Exception {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        writers.shutdown();
+        while (!writers.awaitTermination(1, TimeUnit.SECONDS)) {
+            // Keep waiting; queued frames are bounded by the slot count.
+        }
+        rethrow();
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "PNG frames: %d written, %.1f MB on disk (%.1f%% of raw), %.1f MB/s raw throughput (level %d, filter %s)",
+                frames.get(),
+                writtenBytes.get() / 1_048_576.0,
+                rawBytes.get() == 0
+                    ? 0.0
+                    : 100.0 * writtenBytes.get() / rawBytes.get(),
+                seconds > 0 ? rawBytes.get() / 1_048_576.0 / seconds : 0.0,
+                encoder.level(),
+                encoder.filter().name().toLowerCase(Locale.ROOT)
+            )
+        );
+    }
+
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            failure.compareAndSet(
+                null,
+                new IllegalStateException("PNG writer aborted.")
+            );
+            writers.shutdown();
+            try {
+                writers.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void rethrow() throws Exception {
+        Throwable error = failure.get();
+        if (error == null) {
+            return;
+        }
+        if (error instanceof Exception) {
+            throw (Exception) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new IllegalStateException(error);
+    }
+}
@@ -0,0 +1,93 @@
+import com.badlogic.gdx.graphics.Pixmap;
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Reference-counted frame buffer handed out by {@link FramePool}. */
+final class PooledFrame implements CapturedFrame {
+
+    private final FramePool pool;
+    private final Layout layout;
+    private final int width;
+    private final int height;
+    private final Pixmap pixmap;
+    private final ByteBuffer pixels;
+    private final AtomicInteger references = new AtomicInteger();
+
+    PooledFrame(FramePool pool, Pixmap pixmap) {
+        this.pool = pool;
+        this.layout = Layout.RGBA;
+        this.width = pixmap.getWidth();
+        this.height = pixmap.getHeight();
+        this.pixmap = pixmap;
+        this.pixels = pixmap.getPixels();
+    }
+
+    PooledFrame(FramePool pool, int width, int height, ByteBuffer planes) {
+        this.pool = pool;
+        this.layout = Layout.YUV420P;
+        this.width = width;
+        this.height = height;
+        this.pixmap = null;
+        this.pixels = planes;
+    }
+
+    @Override
+    public Layout layout() {
+        return layout;
+    }
+
+    @Override
+    public Pixmap pixmap() {
+        if (pixmap == null) {
+            throw new IllegalStateException(
+                "Frame holds " + layout + " planes, not an RGBA pixmap."
+            );
+        }
+        return pixmap;
+    }
+
+    @Override
+    public ByteBuffer pixels() {
+        pixels.rewind();
+        return pixels;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public CapturedFrame retain() {
+        if (references.getAndIncrement() <= 0) {
+            throw new IllegalStateException("Frame has already been released.");
+        }
+        return this;
+    }
+
+    @Override
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            pool.release(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("Frame released more than once.");
+        }
+    }
+
+    void acquired() {
+        references.set(1);
+    }
+
+    void dispose() {
+        if (pixmap != null) {
+            pixmap.dispose();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Streams uncompressed frames to a file, named pipe or stdout for external
+ * encoders. Captured buffers are written to the channel as they are, so no
+ * per-frame copy or temporary file is made.
+ *
+ * <p>{@code rgba} is a bare sequence of {@code width * height * 4} byte
+ * frames. {@code y4m} is YUV4MPEG2 with 4:2:0 planes (BT.601, limited range),
+ * which tools such as {@code ffmpeg -i -} and x264 read directly.
+ */
+final class RawFrameWriter implements AutoCloseable {
+
+    private static final byte[] Y4M_FRAME = "FRAME\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final App.CliArguments.RawFormat format;
+    private final ByteBuffer frameHeader;
+    private long frames;
+    private long bytes;
+
+    private RawFrameWriter(FileChannel channel, App.CliArguments.RawFormat format) {
+        this.channel = channel;
+        this.format = format;
+        this.frameHeader = ByteBuffer.wrap(Y4M_FRAME);
+    }
+
+    /** Opens {@code output}, or stdout when it is {@code null}, and writes the stream header. */
+    static RawFrameWriter open(
+        Path output,
+        App.CliArguments.RawFormat format,
+        int width,
+        int height,
+        int fps
+    ) throws IOException {
+        FileChannel channel;
+        if (output == null) {
+            channel = new FileOutputStream(FileDescriptor.out).getChannel();
+        } else {
+            Path parent = output.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // No TRUNCATE_EXISTING: it is meaningless for a named pipe, and a
+            // regular file is truncated below once it is open.
+            channel = FileChannel.open(
+                output,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE
+            );
+            if (Files.isRegularFile(output)) {
+                channel.truncate(0);
+            }
+        }
+        RawFrameWriter writer = new RawFrameWriter(channel, format);
+        try {
+            if (format == App.CliArguments.RawFormat.Y4M) {
+                writer.writeFully(
+                    ByteBuffer.wrap(
+                        String.format(
+                            Locale.ROOT,
+                            "YUV4MPEG2 W%d H%d F%d:1 Ip A1:1 C420jpeg XCOLORRANGE=LIMITED\n",
+                            width,
+                            height,
+                            fps
+                        ).getBytes(StandardCharsets.US_ASCII)
+                    )
+                );
+            }
+        } catch (IOException ex) {
+            writer.close();
+            throw ex;
+        }
+        return writer;
+    }
+
+    void write(CapturedFrame frame) throws IOException {
+        CapturedFrame.Layout expected = format == App.CliArguments.RawFormat.Y4M
+            ? CapturedFrame.Layout.YUV420P
+            : CapturedFrame.Layout.RGBA;
+        if (frame.layout() != expected) {
+            throw new IllegalStateException(
+                format.name() + " output needs " + expected + " frames, got " + frame.layout() + "."
+            );
+        }
+        if (format == App.CliArguments.RawFormat.Y4M) {
+            frameHeader.rewind();
+            writeFully(frameHeader);
+        }
+        writeFully(frame.pixels());
+        frames++;
+    }
+
+    void finish() throws IOException {
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Streamed %d raw %s frame(s), %.1f MB",
+                frames,
+                format.extension(),
+                bytes / 1_048_576.0
+            )
+        );
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            App.logWarn("Unable to close raw frame output: " + ex.getMessage());
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            bytes += channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,727 @@
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the JVM, graphics context and FFmpeg resident and renders jobs
+ * posted to a local HTTP endpoint. A job body holds the usual command-line
+ * options, one per line. Jobs wait in a bounded queue and run one at a time
+ * on the render thread through a single {@link App}, so the polygon batch
+ * and skeleton renderer are shared by every job.
+ *
+ * <pre>
+ * POST   /jobs[?wait=0][&amp;timeout=S][&amp;bytes=1]  submit; waits for the result unless wait=0
+ * GET    /jobs/{id}                            state and output paths
+ * GET    /jobs/{id}/output                     bytes of the video, or else the still
+ * DELETE /jobs/{id}                            cancel a queued or running job
+ * </pre>
+ *
+ * <p>A full queue answers 503. A job that is cancelled or passes its timeout
+ * (counted from submission) is dropped if still queued, or stops at the next
+ * video frame if running.
+ *
+ * <p>Jobs write to, and the output endpoint reads from, any path a client
+ * names, with the daemon's permissions. The endpoint therefore binds to a
+ * loopback address only, unless {@code --token-file} makes every request
+ * carry {@code Authorization: Bearer <token>}. Requests from a browser (any
+ * {@code Origin} header) are refused, and without a token so is any
+ * {@code Host} other than a loopback address, which stops web pages and
+ * DNS-rebound names from reaching the endpoint. The output endpoint serves
+ * only jobs that finished successfully.
+ */
+final class RenderDaemon extends ApplicationAdapter {
+
+    private static final int DEFAULT_PORT = 7878;
+    private static final int DEFAULT_QUEUE_SIZE = 32;
+    private static final int DEFAULT_JOB_TIMEOUT_SECONDS = 120;
+    private static final int MAX_REMEMBERED_JOBS = 1024;
+    private static final long POLL_MILLIS = 50;
+    // Extra time a waiting request allows a timed-out job to reach its next
+    // cancellation check.
+    private static final long WAIT_GRACE_MILLIS = 5000;
+
+    private final String bindAddress;
+    private final byte[] token;
+    private final int port;
+    private final String renderer;
+    private final long jobTimeoutSeconds;
+    private final ArrayBlockingQueue<Job> queue;
+    private final Map<Long, Job> jobs = new LinkedHashMap<Long, Job>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Job> eldest) {
+            return size() > MAX_REMEMBERED_JOBS && eldest.getValue().isFinished();
+        }
+    };
+    private final AtomicLong nextId = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private HttpServer server;
+    private ExecutorService httpThreads;
+    private App worker;
+
+    private RenderDaemon(
+        String bindAddress,
+        byte[] token,
+        int port,
+        String renderer,
+        int queueSize,
+        long jobTimeoutSeconds
+    ) {
+        this.bindAddress = bindAddress;
+        this.token = token;
+        this.port = port;
+        this.renderer = renderer;
+        this.jobTimeoutSeconds = jobTimeoutSeconds;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    static void run(String[] args) throws InterruptedException {
+        String bindAddress = "127.0.0.1";
+        Path tokenFile = null;
+        int port = DEFAULT_PORT;
+        String renderer = "gl";
+        int queueSize = DEFAULT_QUEUE_SIZE;
+        long jobTimeout = DEFAULT_JOB_TIMEOUT_SECONDS;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--bind":
+                    bindAddress = value(args, ++i, arg);
+                    break;
+                case "--token-file":
+                    tokenFile = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--port":
+                    port = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--renderer":
+                    renderer = value(args, ++i, arg).toLowerCase(Locale.ROOT).trim();
+                    if (!"gl".equals(renderer) && !"software".equals(renderer)) {
+                        throw new IllegalArgumentException(
+                            "--renderer expects 'gl' or 'software'."
+                        );
+                    }
+                    break;
+                case "--queue-size":
+                    queueSize = positive(value(args, ++i, arg), arg);
+                    break;
+                case "--job-timeout":
+                    jobTimeout = positive(value(args, ++i, arg), arg);
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown daemon argument: " + arg
+                    );
+            }
+        }
+
+        byte[] token = tokenFile != null ? readToken(tokenFile) : null;
+        if (token == null && !isLoopback(bindAddress)) {
+            throw new IllegalArgumentException(
+                "--bind " + bindAddress + " is not a loopback address; jobs can read and " +
+                    "write any path the daemon can, so give --token-file FILE to require a token."
+            );
+        }
+
+        RenderDaemon daemon = new RenderDaemon(
+            bindAddress,
+            token,
+            port,
+            renderer,
+            queueSize,
+            jobTimeout
+        );
+        if ("software".equals(renderer)) {
+            HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+            // render() blocks on the job queue, so the loop needs no sleep.
+            config.updatesPerSecond = 0;
+            new HeadlessApplication(daemon, config);
+            daemon.stopped.await();
+        } else {
+            new Lwjgl3Application(daemon, App.windowConfiguration(128, 128));
+        }
+    }
+
+    @Override
+    public void create() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Unable to listen on " + bindAddress + ":" + port,
+                ex
+            );
+        }
+        httpThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "render-daemon-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(httpThreads);
+        server.createContext("/jobs", this::handle);
+        server.start();
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Render daemon listening on http://%s:%d/jobs (%s renderer, queue %d, timeout %ds)",
+                bindAddress,
+                port,
+                renderer,
+                queue.remainingCapacity(),
+                jobTimeoutSeconds
+            )
+        );
+    }
+
+    @Override
+    public void render() {
+        Job job;
+        try {
+            job = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (job == null || !job.start()) {
+            return;
+        }
+        try {
+            if (
+                !job.arguments.incremental() ||
+                !BuildFingerprint.isUpToDate(job.arguments)
+            ) {
+                if (worker == null) {
+                    worker = new App(job.arguments);
+                }
+                worker.runJob(job.arguments, job::shouldStop);
+            }
+            job.finish(State.DONE, null);
+        } catch (CancellationException ex) {
+            job.finish(
+                job.cancelRequested ? State.CANCELLED : State.TIMED_OUT,
+                ex.getMessage()
+            );
+        } catch (RuntimeException ex) {
+            App.logError("Job " + job.id + " failed: " + ex.getMessage(), ex);
+            job.finish(State.FAILED, String.valueOf(ex.getMessage()));
+        }
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Job %d %s in %.0f ms (%.0f ms queued)",
+                job.id,
+                job.state.label,
+                job.renderMillis(),
+                job.queuedMillis()
+            )
+        );
+    }
+
+    @Override
+    public void dispose() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (httpThreads != null) {
+            httpThreads.shutdownNow();
+        }
+        Job queued;
+        while ((queued = queue.poll()) != null) {
+            queued.finish(State.CANCELLED, "Daemon stopped.");
+        }
+        if (worker != null) {
+            worker.dispose();
+        }
+        stopped.countDown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String rejected = rejectedOrigin(exchange);
+            if (rejected != null) {
+                sendError(exchange, 403, rejected);
+                return;
+            }
+            if (!authorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                sendError(exchange, 401, "Missing or wrong bearer token.");
+                return;
+            }
+            String[] parts = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            if (parts.length == 2 && "POST".equals(method)) {
+                submit(exchange);
+                return;
+            }
+            if (parts.length < 3 || parts.length > 4) {
+                sendError(exchange, 404, "Unknown path.");
+                return;
+            }
+            Job job = find(parts[2]);
+            if (job == null) {
+                sendError(exchange, 404, "Unknown job: " + parts[2]);
+            } else if (parts.length == 4 && "output".equals(parts[3]) && "GET".equals(method)) {
+                sendOutput(exchange, job);
+            } else if (parts.length == 3 && "GET".equals(method)) {
+                sendJson(exchange, 200, job.toJson());
+            } else if (parts.length == 3 && "DELETE".equals(method)) {
+                cancel(job);
+                sendJson(exchange, 200, job.toJson());
+            } else {
+                sendError(exchange, 405, "Unsupported request.");
+            }
+        } catch (RuntimeException ex) {
+            App.logError("Daemon request failed: " + ex.getMessage(), ex);
+            sendError(exchange, 500, String.valueOf(ex.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String rejectedOrigin(HttpExchange exchange) {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            return "Browser requests are not accepted.";
+        }
+        if (token == null && !isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+            return "Host must be a loopback address.";
+        }
+        return null;
+    }
+
+    /**
+     * Checks a {@code Host} header without resolving it: a name that merely
+     * resolves to a loopback address is what DNS rebinding relies on.
+     */
+    static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String name = host.trim();
+        if (name.startsWith("[")) {
+            int close = name.indexOf(']');
+            if (close < 0) {
+                return false;
+            }
+            name = name.substring(1, close);
+        } else if (name.indexOf(':') >= 0) {
+            name = name.substring(0, name.indexOf(':'));
+        }
+        if ("localhost".equalsIgnoreCase(name)) {
+            return true;
+        }
+        boolean literal = name.indexOf(':') >= 0 || name.matches("[0-9]+(\\.[0-9]+){3}");
+        if (!literal) {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(name).isLoopbackAddress();
+        } catch (UnknownHostException ex) {
+            return false;
+        }
+    }
+
+    private boolean authorized(HttpExchange exchange) {
+        if (token == null) {
+            return true;
+        }
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return false;
+        }
+        byte[] presented = header.substring("Bearer ".length()).trim()
+            .getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(presented, token);
+    }
+
+    private static boolean isLoopback(String address) {
+        try {
+            for (InetAddress resolved : InetAddress.getAllByName(address)) {
+                if (!resolved.isLoopbackAddress()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (UnknownHostException ex) {
+            throw new IllegalArgumentException("Unknown --bind address: " + address);
+        }
+    }
+
+    private static byte[] readToken(Path file) {
+        String token;
+        try {
+            token = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(
+                "Unable to read --token-file " + file + ": " + ex.getMessage()
+            );
+        }
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("--token-file " + file + " is empty.");
+        }
+        return token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        List<String> args = new ArrayList<>();
+        try (
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)
+            )
+        ) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    args.add(line.trim());
+                }
+            }
+        }
+        // Every job uses the renderer the daemon was started with.
+        args.add("--renderer");
+        args.add(renderer);
+
+        App.CliArguments arguments;
+        long timeoutSeconds;
+        try {
+            arguments = App.CliArguments.parse(args.toArray(new String[0]));
+            if (arguments.videoToStdout()) {
+                throw new IllegalArgumentException(
+                    "--video-output - is not available to daemon jobs."
+                );
+            }
+            timeoutSeconds = query.containsKey("timeout")
+                ? positive(query.get("timeout"), "timeout")
+                : jobTimeoutSeconds;
+        } catch (App.CliArguments.HelpRequested ex) {
+            sendError(exchange, 400, "--help is not available to daemon jobs.");
+            return;
+        } catch (IllegalArgumentException ex) {
+            sendError(exchange, 400, ex.getMessage());
+            return;
+        }
+
+        Job job = new Job(
+            nextId.incrementAndGet(),
+            arguments,
+            System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds)
+        );
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+        }
+        if (!queue.offer(job)) {
+            synchronized (jobs) {
+                jobs.remove(job.id);
+            }
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendError(exchange, 503, "Job queue is full.");
+            return;
+        }
+        if ("0".equals(query.get("wait"))) {
+            sendJson(exchange, 202, job.toJson());
+            return;
+        }
+
+        long waitMillis = TimeUnit.NANOSECONDS.toMillis(job.deadline - System.nanoTime()) +
+            WAIT_GRACE_MILLIS;
+        try {
+            job.finished.await(Math.max(0, waitMillis), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!job.isFinished()) {
+            sendJson(exchange, 504, job.toJson());
+        } else if (job.state == State.DONE && "1".equals(query.get("bytes"))) {
+            sendOutput(exchange, job);
+        } else {
+            sendJson(exchange, job.state.status, job.toJson());
+        }
+    }
+
+    private void cancel(Job job) {
+        job.cancelRequested = true;
+        if (queue.remove(job)) {
+            job.finish(State.CANCELLED, "Cancelled before it started.");
+        }
+    }
+
+    private Job find(String id) {
+        try {
+            synchronized (jobs) {
+                return jobs.get(Long.parseLong(id));
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static void sendOutput(HttpExchange exchange, Job job) throws IOException {
+        if (job.state != State.DONE) {
+            // A failed job may name a file it never wrote; do not serve it.
+            sendError(exchange, 409, "Job " + job.id + " is " + job.state.label + ".");
+            return;
+        }
+        Path output = job.primaryOutput();
+        if (output == null) {
+            sendError(exchange, 404, "Job " + job.id + " has no output file.");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", contentType(output));
+        exchange.getResponseHeaders().set("X-Output-Path", output.toString());
+        exchange.sendResponseHeaders(200, Files.size(output));
+        try (OutputStream body = exchange.getResponseBody()) {
+            Files.copy(output, body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message)
+        throws IOException {
+        sendJson(exchange, status, "{\"error\": " + quote(message) + "}");
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json)
+        throws IOException {
+        byte[] body = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String contentType(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        String extension = name.substring(name.lastIndexOf('.') + 1);
+        switch (extension) {
+            case "png":
+                return "image/png";
+            case "jpg":
+            case "jpeg":
+                return "image/jpeg";
+            case "webp":
+                return "image/webp";
+            case "avif":
+                return "image/avif";
+            case "gif":
+                return "image/gif";
+            case "apng":
+                return "image/apng";
+            case "mp4":
+                return "video/mp4";
+            case "webm":
+                return "video/webm";
+            case "mkv":
+                return "video/x-matroska";
+            default:
+                return "application/octet-stream";
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> values = new HashMap<>();
+        if (raw == null) {
+            return values;
+        }
+        for (String pair : raw.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                values.put(pair.substring(0, equals), pair.substring(equals + 1));
+            } else if (!pair.isEmpty()) {
+                values.put(pair, "");
+            }
+        }
+        return values;
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static int positive(String value, String flag) {
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            parsed = 0;
+        }
+        if (parsed <= 0) {
+            throw new IllegalArgumentException(flag + " expects a positive integer.");
+        }
+        return parsed;
+    }
+
+    private static String value(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Expected a value after " + flag);
+        }
+        return args[index];
+    }
+
+    private enum State {
+        QUEUED("queued", 202),
+        RUNNING("running", 202),
+        DONE("done", 200),
+        FAILED("failed", 500),
+        CANCELLED("cancelled", 409),
+        TIMED_OUT("timed-out", 504);
+
+        private final String label;
+        private final int status;
+
+        State(String label, int status) {
+            this.label = label;
+            this.status = status;
+        }
+    }
+
+    private static final class Job {
+
+        private final long id;
+        private final App.CliArguments arguments;
+        private final long deadline;
+        private final long submittedNanos = System.nanoTime();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean cancelRequested;
+        private volatile State state = State.QUEUED;
+        private volatile String error;
+        private long startedNanos;
+        private long finishedNanos;
+
+        private Job(long id, App.CliArguments arguments, long deadline) {
+            this.id = id;
+            this.arguments = arguments;
+            this.deadline = deadline;
+        }
+
+        boolean shouldStop() {
+            return cancelRequested || System.nanoTime() - deadline > 0;
+        }
+
+        boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+
+        synchronized boolean start() {
+            if (state != State.QUEUED) {
+                return false;
+            }
+            if (shouldStop()) {
+                finish(
+                    cancelRequested ? State.CANCELLED : State.TIMED_OUT,
+                    "Stopped before it started."
+                );
+                return false;
+            }
+            state = State.RUNNING;
+            startedNanos = System.nanoTime();
+            return true;
+        }
+
+        synchronized void finish(State result, String message) {
+            if (isFinished()) {
+                return;
+            }
+            if (startedNanos == 0) {
+                startedNanos = System.nanoTime();
+            }
+            finishedNanos = System.nanoTime();
+            error = message;
+            state = result;
+            finished.countDown();
+        }
+
+        synchronized double queuedMillis() {
+            long end = startedNanos != 0 ? startedNanos : System.nanoTime();
+            return (end - submittedNanos) / 1_000_000.0;
+        }
+
+        synchronized double renderMillis() {
+            if (startedNanos == 0) {
+                return 0.0;
+            }
+            long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+            return (end - startedNanos) / 1_000_000.0;
+        }
+
+        List<Path> outputs() {
+            List<Path> outputs = new ArrayList<>();
+            addIfExists(outputs, arguments.shouldRenderVideo() ? arguments.videoOutput() : null);
+            addIfExists(outputs, arguments.outputPath());
+            addIfExists(outputs, arguments.spoolPath());
+            addIfExists(outputs, arguments.keepFrames() ? arguments.framesDir() : null);
+            return outputs;
+        }
+
+        Path primaryOutput() {
+            for (Path output : outputs()) {
+                if (Files.isRegularFile(output)) {
+                    return output;
+                }
+            }
+            return null;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"id\": ").append(id);
+            json.append(", \"state\": ").append(quote(state.label));
+            json.append(", \"error\": ").append(quote(error));
+            json.append(String.format(Locale.ROOT, ", \"queuedMs\": %.1f", queuedMillis()));
+            json.append(String.format(Locale.ROOT, ", \"renderMs\": %.1f", renderMillis()));
+            json.append(", \"outputs\": [");
+            if (state == State.DONE) {
+                List<Path> outputs = outputs();
+                for (int i = 0; i < outputs.size(); i++) {
+                    json.append(i == 0 ? "" : ", ").append(quote(outputs.get(i).toString()));
+                }
+            }
+            return json.append("]}").toString();
+        }
+
+        private static void addIfExists(List<Path> outputs, Path path) {
+            if (path != null && Files.exists(path)) {
+                outputs.add(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+final class ScalarPixelKernels implements PixelKernels {
+
+    static final ScalarPixelKernels INSTANCE = new ScalarPixelKernels();
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+
+    @Override
+    public void rgbaToLuma(
+        byte[] src,
+        int srcOffset,
+        byte[] dst,
+        int dstOffset,
+        int pixels
+    ) {
+        int s = srcOffset;
+        for (int i = 0; i < pixels; i++) {
+            int r = src[s] & 0xff;
+            int g = src[s + 1] & 0xff;
+            int b = src[s + 2] & 0xff;
+            dst[dstOffset + i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+            s += 4;
+        }
+    }
+
+    @Override
+    public void rgbaToChroma(
+        byte[] row0,
+        byte[] row1,
+        int srcOffset,
+        byte[] u,
+        byte[] v,
+        int dstOffset,
+        int pixels
+    ) {
+        int s = srcOffset;
+        int samples = pixels / 2;
+        for (int i = 0; i < samples; i++) {
+            int r =
+                (row0[s] & 0xff) +
+                (row0[s + 4] & 0xff) +
+                (row1[s] & 0xff) +
+                (row1[s + 4] & 0xff);
+            int g =
+                (row0[s + 1] & 0xff) +
+                (row0[s + 5] & 0xff) +
+                (row1[s + 1] & 0xff) +
+                (row1[s + 5] & 0xff);
+            int b =
+                (row0[s + 2] & 0xff) +
+                (row0[s + 6] & 0xff) +
+                (row1[s + 2] & 0xff) +
+                (row1[s + 6] & 0xff);
+            r = (r + 2) >> 2;
+            g = (g + 2) >> 2;
+            b = (b + 2) >> 2;
+            u[dstOffset + i] = (byte) (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+            v[dstOffset + i] = (byte) (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+            s += 8;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease files that let several processes, on one machine or on several
+ * sharing a filesystem, split a batch without a coordinator. A folder is
+ * claimed by exclusively creating {@code <key>.<generation>.lease}, which a
+ * {@link LeaseHeartbeat} renews while the job runs. Once it goes stale the
+ * next claimer creates the following generation, so exactly one process
+ * takes over. A folder that rendered gets
+ * a {@code <key>.done} marker and is skipped by every later run. A failure
+ * only counts an attempt in {@code <key>.failed}: the folder is claimed again
+ * (by a process still holding it back, or by a later run) until it has
+ * failed {@value #MAX_ATTEMPTS} times, so a transient error does not leave it
+ * unrendered for good.
+ *
+ * <p>Keys are derived from the folder's absolute path, so every process must
+ * see the library under the same path.
+ */
+final class ShardLeases implements AutoCloseable {
+
+    private static final String LEASE_SUFFIX = ".lease";
+    private static final String DONE_SUFFIX = ".done";
+    private static final String FAILED_SUFFIX = ".failed";
+    static final int MAX_ATTEMPTS = 3;
+
+    private final Path directory;
+    private final LeaseHeartbeat leases;
+
+    private ShardLeases(Path directory, LeaseHeartbeat leases) {
+        this.directory = directory;
+        this.leases = leases;
+    }
+
+    static ShardLeases open(Path directory, int leaseSeconds) throws IOException {
+        return open(
+            directory,
+            new LeaseHeartbeat("shard-lease-heartbeat", TimeUnit.SECONDS.toMillis(leaseSeconds))
+        );
+    }
+
+    static ShardLeases open(Path directory, LeaseHeartbeat leases) throws IOException {
+        Files.createDirectories(directory);
+        return new ShardLeases(directory.toAbsolutePath().normalize(), leases);
+    }
+
+    /** How long an idle claimer waits before looking at held folders again. */
+    long retryMillis() {
+        return Math.min(5000, Math.max(100, leases.leaseMillis() / 4));
+    }
+
+    boolean isFinished(Path folder) {
+        String key = key(folder);
+        return Files.exists(directory.resolve(key + DONE_SUFFIX)) ||
+            failedAttempts(key) >= MAX_ATTEMPTS;
+    }
+
+    /**
+     * Claims {@code folder}, taking over an expired lease if needed. Returns
+     * {@code null} if the folder is finished or another live process holds it.
+     */
+    Lease tryClaim(Path folder) throws IOException {
+        if (isFinished(folder)) {
+            return null;
+        }
+        String key = key(folder);
+        // Only the newest generation can be live; older ones may already be
+        // gone, so count up from the newest rather than from zero.
+        int latest = latestGeneration(key);
+        if (latest >= 0) {
+            Path current = leaseFile(key, latest);
+            if (!leases.isStale(current)) {
+                return null;
+            }
+            App.logWarn(
+                "Lease on " + folder + " held by " + read(current).getProperty("owner", "?") +
+                    " has expired; taking it over."
+            );
+        }
+
+        int generation = latest + 1;
+        Path file = leaseFile(key, generation);
+        Properties properties = new Properties();
+        properties.setProperty("owner", leases.owner());
+        properties.setProperty("folder", folder.toString());
+        properties.setProperty("claimed", Long.toString(leases.now()));
+        try (
+            OutputStream out = Files.newOutputStream(
+                file,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            properties.store(out, "create_preview shard lease");
+        } catch (FileAlreadyExistsException ex) {
+            return null; // Another process claimed this generation first.
+        }
+        // The holder may have finished, and removed its leases, between the
+        // first check and our create; do not render the folder twice.
+        if (isFinished(folder)) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        leases.hold(file);
+        return new Lease(key, generation, file, properties);
+    }
+
+    @Override
+    public void close() {
+        leases.close();
+    }
+
+    private Path leaseFile(String key, int generation) {
+        return directory.resolve(key + "." + generation + LEASE_SUFFIX);
+    }
+
+    // Generations of the key's lease files, parsed from their names.
+    private List<Integer> generations(String key) throws IOException {
+        List<Integer> generations = new ArrayList<>();
+        String prefix = key + ".";
+        try (
+            DirectoryStream<Path> stream = Files.newDirectoryStream(
+                directory,
+                prefix + "*" + LEASE_SUFFIX
+            )
+        ) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(
+                        Integer.parseInt(
+                            name.substring(prefix.length(), name.length() - LEASE_SUFFIX.length())
+                        )
+                    );
+                } catch (NumberFormatException ex) {
+                    // Another folder's key that starts with this one.
+                }
+            }
+        }
+        return generations;
+    }
+
+    private int latestGeneration(String key) throws IOException {
+        int latest = -1;
+        for (int generation : generations(key)) {
+            latest = Math.max(latest, generation);
+        }
+        return latest;
+    }
+
+    // A marker from before attempts were counted stands for one attempt.
+    private int failedAttempts(String key) {
+        Path marker = directory.resolve(key + FAILED_SUFFIX);
+        if (!Files.exists(marker)) {
+            return 0;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(read(marker).getProperty("attempts", "1")));
+        } catch (NumberFormatException ex) {
+            return 1;
+        }
+    }
+
+    private static Properties read(Path file) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException ex) {
+            // Unreadable or half-written; only used for log messages.
+        }
+        return properties;
+    }
+
+    // Readable folder name plus a digest of the full path, so folders with
+    // the same name in different places do not collide.
+    private static String key(Path folder) {
+        String path = folder.toAbsolutePath().normalize().toString();
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(
+                path.getBytes(StandardCharsets.UTF_8)
+            );
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is unavailable.", ex);
+        }
+        StringBuilder key = new StringBuilder();
+        Path name = folder.getFileName();
+        if (name != null) {
+            key.append(name.toString().replaceAll("[^A-Za-z0-9._-]", "_")).append('-');
+        }
+        for (int i = 0; i < 8; i++) {
+            key.append(String.format(Locale.ROOT, "%02x", digest[i]));
+        }
+        return key.toString();
+    }
+
+    final class Lease {
+
+        private final String key;
+        private final int generation;
+        private final Path file;
+        private final Properties properties;
+
+        private Lease(String key, int generation, Path file, Properties properties) {
+            this.key = key;
+            this.generation = generation;
+            this.file = file;
+            this.properties = properties;
+        }
+
+        void complete() throws IOException {
+            finish(DONE_SUFFIX, null);
+            Files.deleteIfExists(directory.resolve(key + FAILED_SUFFIX));
+        }
+
+        void fail(String error) throws IOException {
+            properties.setProperty("attempts", Integer.toString(failedAttempts(key) + 1));
+            finish(FAILED_SUFFIX, error);
+        }
+
+        // The marker is written before the lease files go away, so the folder
+        // is never seen as unclaimed and unfinished. Newer generations belong
+        // to a process that took this lease over and are left alone.
+        private void finish(String suffix, String error) throws IOException {
+            leases.release(file);
+            properties.setProperty("finished", Long.toString(leases.now()));
+            if (error != null) {
+                properties.setProperty("error", error);
+            }
+            Path marker = directory.resolve(key + suffix);
+            Path temp = directory.resolve("." + file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                properties.store(out, "create_preview shard result");
+            }
+            Files.move(temp, marker, StandardCopyOption.REPLACE_EXISTING);
+            for (int older : generations(key)) {
+                if (older <= generation) {
+                    Files.deleteIfExists(leaseFile(key, older));
+                }
+            }
+        }
+    }
+}
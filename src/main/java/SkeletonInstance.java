@@ -0,0 +1,25 @@
+import com.esotericsoftware.spine.AnimationState;
+import com.esotericsoftware.spine.Skeleton;
+
+final class SkeletonInstance {
+
+    private final Skeleton skeleton;
+    private final AnimationState animationState;
+
+    SkeletonInstance(Skeleton skeleton, AnimationState animationState) {
+        this.skeleton = skeleton;
+        this.animationState = animationState;
+    }
+
+    Skeleton skeleton() {
+        return skeleton;
+    }
+
+    AnimationState animationState() {
+        return animationState;
+    }
+
+    void advance(float delta) {
+        App.advance(skeleton, animationState, delta);
+    }
+}
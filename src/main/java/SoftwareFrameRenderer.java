@@ -0,0 +1,582 @@
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.math.Matrix4;
+import com.esotericsoftware.spine.BlendMode;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.Slot;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.attachments.MeshAttachment;
+import com.esotericsoftware.spine.attachments.RegionAttachment;
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class SoftwareFrameRenderer implements FrameRenderer {
+
+    private static final short[] QUAD_TRIANGLES = { 0, 1, 2, 2, 3, 0 };
+    private static final int TILE_ROWS = 32;
+    private static final int CLEAR_COLOR = 0x000000ff;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final OrthographicCamera camera;
+    private final int outputWidth;
+    private final int outputHeight;
+    private final FramePool framePool;
+    private final ArrayDeque<CapturedFrame> capturedFrames =
+        new ArrayDeque<>();
+    private final Map<Texture, TexturePage> pages = new IdentityHashMap<>();
+    private final ExecutorService executor;
+    private final List<Callable<Void>> tiles = new ArrayList<>();
+    private final int[] colorBuffer;
+    private final ArrayList<DrawCall> drawCalls = new ArrayList<>();
+    private int drawCallCount;
+    private float[] worldVertices = new float[64];
+    private ByteBuffer targetPixels;
+
+    public SoftwareFrameRenderer(
+        OrthographicCamera camera,
+        int outputWidth,
+        int outputHeight,
+        int threads
+    ) {
+        this.camera = camera;
+        this.outputWidth = outputWidth;
+        this.outputHeight = outputHeight;
+        this.framePool = new FramePool(outputWidth, outputHeight);
+        this.colorBuffer = new int[outputWidth * outputHeight];
+        int workerCount = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(
+                runnable,
+                "software-raster-" + THREAD_COUNTER.incrementAndGet()
+            );
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int y = 0; y < outputHeight; y += TILE_ROWS) {
+            int startY = y;
+            int endY = Math.min(outputHeight, y + TILE_ROWS);
+            tiles.add(() -> {
+                rasterizeTile(startY, endY);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void submitFrame(Skeleton skeleton) {
+        if (!canSubmitFrame()) {
+            throw new IllegalStateException(
+                "Readback queue is full; take a frame first."
+            );
+        }
+        collectDrawCalls(skeleton);
+
+        CapturedFrame frame = framePool.acquire(CapturedFrame.Layout.RGBA);
+        targetPixels = frame.pixels();
+        try {
+            for (Future<Void> future : executor.invokeAll(tiles)) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            frame.release();
+            throw new IllegalStateException("Software rendering interrupted", ex);
+        } catch (ExecutionException ex) {
+            frame.release();
+            throw new IllegalStateException(
+                "Software rendering failed",
+                ex.getCause()
+            );
+        } finally {
+            targetPixels = null;
+        }
+        capturedFrames.addLast(frame);
+    }
+
+    @Override
+    public boolean canSubmitFrame() {
+        return capturedFrames.isEmpty();
+    }
+
+    @Override
+    public int pendingFrames() {
+        return capturedFrames.size();
+    }
+
+    @Override
+    public CapturedFrame takeFrame() {
+        CapturedFrame frame = capturedFrames.pollFirst();
+        if (frame == null) {
+            throw new IllegalStateException("No frame has been submitted.");
+        }
+        return frame;
+    }
+
+    @Override
+    public FramePool framePool() {
+        return framePool;
+    }
+
+    @Override
+    public int getOutputWidth() {
+        return outputWidth;
+    }
+
+    @Override
+    public int getOutputHeight() {
+        return outputHeight;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        for (CapturedFrame frame : capturedFrames) {
+            frame.release();
+        }
+        capturedFrames.clear();
+        framePool.dispose();
+        pages.clear();
+    }
+
+    private void collectDrawCalls(Skeleton skeleton) {
+        drawCallCount = 0;
+        Matrix4 projection = camera.combined;
+        Color skeletonColor = skeleton.getColor();
+
+        for (Slot slot : skeleton.getDrawOrder()) {
+            if (!slot.getBone().isActive()) {
+                continue;
+            }
+            Attachment attachment = slot.getAttachment();
+            float[] uvs;
+            short[] triangles;
+            int vertexCount;
+            Texture texture;
+            Color attachmentColor;
+
+            if (attachment instanceof RegionAttachment) {
+                RegionAttachment region = (RegionAttachment) attachment;
+                ensureWorldVerticesCapacity(8);
+                region.computeWorldVertices(slot, worldVertices, 0, 2);
+                uvs = region.getUVs();
+                triangles = QUAD_TRIANGLES;
+                vertexCount = 4;
+                texture = region.getRegion().getTexture();
+                attachmentColor = region.getColor();
+            } else if (attachment instanceof MeshAttachment) {
+                MeshAttachment mesh = (MeshAttachment) attachment;
+                int length = mesh.getWorldVerticesLength();
+                ensureWorldVerticesCapacity(length);
+                mesh.computeWorldVertices(slot, 0, length, worldVertices, 0, 2);
+                uvs = mesh.getUVs();
+                triangles = mesh.getTriangles();
+                vertexCount = length >> 1;
+                texture = mesh.getRegion().getTexture();
+                attachmentColor = mesh.getColor();
+            } else {
+                continue;
+            }
+
+            Color slotColor = slot.getColor();
+            float alpha = skeletonColor.a * slotColor.a * attachmentColor.a;
+            if (alpha <= 0f || triangles.length == 0) {
+                continue;
+            }
+
+            DrawCall call = nextDrawCall();
+            call.page = pageFor(texture);
+            call.blendMode = slot.getData().getBlendMode();
+            call.lightR = skeletonColor.r * slotColor.r * attachmentColor.r;
+            call.lightG = skeletonColor.g * slotColor.g * attachmentColor.g;
+            call.lightB = skeletonColor.b * slotColor.b * attachmentColor.b;
+            call.lightA = alpha;
+            Color dark = slot.getDarkColor();
+            call.darkR = dark != null ? dark.r : 0f;
+            call.darkG = dark != null ? dark.g : 0f;
+            call.darkB = dark != null ? dark.b : 0f;
+            call.load(
+                worldVertices,
+                uvs,
+                vertexCount,
+                triangles,
+                projection,
+                outputWidth,
+                outputHeight
+            );
+        }
+    }
+
+    private DrawCall nextDrawCall() {
+        if (drawCallCount == drawCalls.size()) {
+            drawCalls.add(new DrawCall());
+        }
+        return drawCalls.get(drawCallCount++);
+    }
+
+    private void ensureWorldVerticesCapacity(int required) {
+        if (worldVertices.length < required) {
+            worldVertices = Arrays.copyOf(worldVertices, required);
+        }
+    }
+
+    private TexturePage pageFor(Texture texture) {
+        TexturePage page = pages.get(texture);
+        if (page == null) {
+            page = TexturePage.load(texture);
+            pages.put(texture, page);
+        }
+        return page;
+    }
+
+    private void rasterizeTile(int startY, int endY) {
+        Arrays.fill(
+            colorBuffer,
+            startY * outputWidth,
+            endY * outputWidth,
+            CLEAR_COLOR
+        );
+        for (int c = 0; c < drawCallCount; c++) {
+            DrawCall call = drawCalls.get(c);
+            if (call.maxY < startY || call.minY >= endY) {
+                continue;
+            }
+            for (int t = 0; t < call.triangleCount; t++) {
+                rasterizeTriangle(call, t, startY, endY);
+            }
+        }
+
+        ByteBuffer pixels = targetPixels.duplicate();
+        pixels.order(ByteOrder.BIG_ENDIAN);
+        IntBuffer view = pixels.asIntBuffer();
+        view.position(startY * outputWidth);
+        view.put(
+            colorBuffer,
+            startY * outputWidth,
+            (endY - startY) * outputWidth
+        );
+    }
+
+    private void rasterizeTriangle(
+        DrawCall call,
+        int triangle,
+        int startY,
+        int endY
+    ) {
+        float[] v = call.triangles;
+        int base = triangle * 12;
+        float x0 = v[base];
+        float y0 = v[base + 1];
+        float x1 = v[base + 4];
+        float y1 = v[base + 5];
+        float x2 = v[base + 8];
+        float y2 = v[base + 9];
+
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if (Math.abs(area) < 1e-6f) {
+            return;
+        }
+        int i1 = base + 4;
+        int i2 = base + 8;
+        if (area < 0f) {
+            i1 = base + 8;
+            i2 = base + 4;
+            float tx = x1;
+            float ty = y1;
+            x1 = x2;
+            y1 = y2;
+            x2 = tx;
+            y2 = ty;
+            area = -area;
+        }
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(
+            outputWidth - 1,
+            (int) Math.ceil(Math.max(x0, Math.max(x1, x2)))
+        );
+        int minY = Math.max(
+            startY,
+            (int) Math.floor(Math.min(y0, Math.min(y1, y2)))
+        );
+        int maxY = Math.min(
+            endY - 1,
+            (int) Math.ceil(Math.max(y0, Math.max(y1, y2)))
+        );
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        float invArea = 1f / area;
+        float u0 = v[base + 2];
+        float v0 = v[base + 3];
+        float u1 = v[i1 + 2];
+        float v1 = v[i1 + 3];
+        float u2 = v[i2 + 2];
+        float v2 = v[i2 + 3];
+
+        boolean inclusive0 = isTopLeft(x2 - x1, y2 - y1);
+        boolean inclusive1 = isTopLeft(x0 - x2, y0 - y2);
+        boolean inclusive2 = isTopLeft(x1 - x0, y1 - y0);
+
+        TexturePage page = call.page;
+        for (int py = minY; py <= maxY; py++) {
+            float sy = py + 0.5f;
+            int row = py * outputWidth;
+            for (int px = minX; px <= maxX; px++) {
+                float sx = px + 0.5f;
+                float w0 = (x2 - x1) * (sy - y1) - (y2 - y1) * (sx - x1);
+                float w1 = (x0 - x2) * (sy - y2) - (y0 - y2) * (sx - x2);
+                float w2 = (x1 - x0) * (sy - y0) - (y1 - y0) * (sx - x0);
+                if (
+                    !covers(w0, inclusive0) ||
+                    !covers(w1, inclusive1) ||
+                    !covers(w2, inclusive2)
+                ) {
+                    continue;
+                }
+                float l0 = w0 * invArea;
+                float l1 = w1 * invArea;
+                float l2 = w2 * invArea;
+                float u = l0 * u0 + l1 * u1 + l2 * u2;
+                float t = l0 * v0 + l1 * v1 + l2 * v2;
+                int texel = page.sample(u, t);
+                blend(call, texel, row + px);
+            }
+        }
+    }
+
+    private static boolean isTopLeft(float dx, float dy) {
+        return dy > 0f || (dy == 0f && dx < 0f);
+    }
+
+    private static boolean covers(float w, boolean inclusive) {
+        return w > 0f || (inclusive && w == 0f);
+    }
+
+    private void blend(DrawCall call, int texel, int index) {
+        float tr = ((texel >>> 24) & 0xff) / 255f;
+        float tg = ((texel >>> 16) & 0xff) / 255f;
+        float tb = ((texel >>> 8) & 0xff) / 255f;
+        float ta = (texel & 0xff) / 255f;
+
+        float sa = ta * call.lightA;
+        if (sa <= 0f) {
+            return;
+        }
+        float sr = (1f - tr) * call.darkR + tr * call.lightR;
+        float sg = (1f - tg) * call.darkG + tg * call.lightG;
+        float sb = (1f - tb) * call.darkB + tb * call.lightB;
+
+        int dst = colorBuffer[index];
+        float dr = ((dst >>> 24) & 0xff) / 255f;
+        float dg = ((dst >>> 16) & 0xff) / 255f;
+        float db = ((dst >>> 8) & 0xff) / 255f;
+        float da = (dst & 0xff) / 255f;
+
+        float r;
+        float g;
+        float b;
+        float a;
+        switch (call.blendMode) {
+            case additive:
+                r = sr * sa + dr;
+                g = sg * sa + dg;
+                b = sb * sa + db;
+                a = sa + da;
+                break;
+            case multiply:
+                r = sr * dr + dr * (1f - sa);
+                g = sg * dg + dg * (1f - sa);
+                b = sb * db + db * (1f - sa);
+                a = sa + da * (1f - sa);
+                break;
+            case screen:
+                r = sr + dr * (1f - sr);
+                g = sg + dg * (1f - sg);
+                b = sb + db * (1f - sb);
+                a = sa + da * (1f - sa);
+                break;
+            case normal:
+            default:
+                r = sr * sa + dr * (1f - sa);
+                g = sg * sa + dg * (1f - sa);
+                b = sb * sa + db * (1f - sa);
+                a = sa + da * (1f - sa);
+                break;
+        }
+
+        colorBuffer[index] =
+            (toByte(r) << 24) | (toByte(g) << 16) | (toByte(b) << 8) | toByte(a);
+    }
+
+    private static int toByte(float value) {
+        if (value >= 1f) {
+            return 255;
+        }
+        if (value <= 0f) {
+            return 0;
+        }
+        return (int) (value * 255f + 0.5f);
+    }
+
+    private static final class DrawCall {
+
+        private TexturePage page;
+        private BlendMode blendMode;
+        private float lightR;
+        private float lightG;
+        private float lightB;
+        private float lightA;
+        private float darkR;
+        private float darkG;
+        private float darkB;
+        private float[] triangles = new float[0];
+        private int triangleCount;
+        private float minY;
+        private float maxY;
+
+        void load(
+            float[] vertices,
+            float[] uvs,
+            int vertexCount,
+            short[] indices,
+            Matrix4 projection,
+            int width,
+            int height
+        ) {
+            triangleCount = indices.length / 3;
+            int required = triangleCount * 12;
+            if (triangles.length < required) {
+                triangles = new float[required];
+            }
+            float[] m = projection.val;
+            minY = Float.MAX_VALUE;
+            maxY = -Float.MAX_VALUE;
+            int out = 0;
+            for (int i = 0; i < triangleCount * 3; i++) {
+                int vertex = indices[i];
+                if (vertex >= vertexCount) {
+                    throw new IllegalStateException(
+                        "Triangle index out of range: " + vertex
+                    );
+                }
+                float wx = vertices[vertex * 2];
+                float wy = vertices[vertex * 2 + 1];
+                float ndcX = m[Matrix4.M00] * wx + m[Matrix4.M01] * wy + m[Matrix4.M03];
+                float ndcY = m[Matrix4.M10] * wx + m[Matrix4.M11] * wy + m[Matrix4.M13];
+                float sx = (ndcX + 1f) * 0.5f * width;
+                float sy = (1f - ndcY) * 0.5f * height;
+                triangles[out++] = sx;
+                triangles[out++] = sy;
+                triangles[out++] = uvs[vertex * 2];
+                triangles[out++] = uvs[vertex * 2 + 1];
+                minY = Math.min(minY, sy);
+                maxY = Math.max(maxY, sy);
+            }
+        }
+    }
+
+    private static final class TexturePage {
+
+        private final int width;
+        private final int height;
+        private final int[] texels;
+        private final boolean linear;
+
+        private TexturePage(int width, int height, int[] texels, boolean linear) {
+            this.width = width;
+            this.height = height;
+            this.texels = texels;
+            this.linear = linear;
+        }
+
+        static TexturePage load(Texture texture) {
+            TextureData data = texture.getTextureData();
+            if (!data.isPrepared()) {
+                data.prepare();
+            }
+            Pixmap source = data.consumePixmap();
+            boolean disposeSource = data.disposePixmap();
+            Pixmap rgba = source;
+            if (source.getFormat() != Pixmap.Format.RGBA8888) {
+                rgba = new Pixmap(
+                    source.getWidth(),
+                    source.getHeight(),
+                    Pixmap.Format.RGBA8888
+                );
+                rgba.setBlending(Pixmap.Blending.None);
+                rgba.drawPixmap(source, 0, 0);
+            }
+            try {
+                int width = rgba.getWidth();
+                int height = rgba.getHeight();
+                int[] texels = new int[width * height];
+                ByteBuffer pixels = rgba.getPixels().duplicate();
+                pixels.order(ByteOrder.BIG_ENDIAN);
+                pixels.rewind();
+                pixels.asIntBuffer().get(texels);
+                boolean linear =
+                    texture.getMagFilter() != Texture.TextureFilter.Nearest;
+                return new TexturePage(width, height, texels, linear);
+            } finally {
+                if (rgba != source) {
+                    rgba.dispose();
+                }
+                if (disposeSource) {
+                    source.dispose();
+                }
+            }
+        }
+
+        int sample(float u, float v) {
+            float x = u * width - 0.5f;
+            float y = v * height - 0.5f;
+            if (!linear) {
+                return texel(Math.round(x), Math.round(y));
+            }
+            int x0 = (int) Math.floor(x);
+            int y0 = (int) Math.floor(y);
+            float fx = x - x0;
+            float fy = y - y0;
+            int c00 = texel(x0, y0);
+            int c10 = texel(x0 + 1, y0);
+            int c01 = texel(x0, y0 + 1);
+            int c11 = texel(x0 + 1, y0 + 1);
+            int result = 0;
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                float top =
+                    ((c00 >>> shift) & 0xff) * (1f - fx) +
+                    ((c10 >>> shift) & 0xff) * fx;
+                float bottom =
+                    ((c01 >>> shift) & 0xff) * (1f - fx) +
+                    ((c11 >>> shift) & 0xff) * fx;
+                int channel = (int) (top * (1f - fy) + bottom * fy + 0.5f);
+                result |= Math.min(255, channel) << shift;
+            }
+            return result;
+        }
+
+        private int texel(int x, int y) {
+            int cx = Math.min(width - 1, Math.max(0, x));
+            int cy = Math.min(height - 1, Math.max(0, y));
+            return texels[cy * width + cx];
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Encodes a {@link FrameSpool} with any encoder profile without rendering
+ * again. Frames are handed to FFmpeg straight from the mapped file; no GL
+ * context is created.
+ */
+final class SpoolReencoder {
+
+    private SpoolReencoder() {}
+
+    static void run(String[] args) {
+        if (args.length == 0 || args[0].startsWith("--")) {
+            throw new IllegalArgumentException(
+                "--reencode-spool expects the spool file as its first value."
+            );
+        }
+        Path spoolPath = Paths.get(args[0]);
+        Path output = null;
+        EncoderProfile profile = EncoderProfile.BALANCED;
+        Integer fps = null;
+        boolean fragmented = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--video-output":
+                    output = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--encoder-profile":
+                    profile = EncoderProfile.parse(value(args, ++i, arg));
+                    break;
+                case "--fps":
+                    fps = Integer.parseInt(value(args, ++i, arg));
+                    if (fps <= 0) {
+                        throw new IllegalArgumentException(
+                            "--fps expects a positive integer."
+                        );
+                    }
+                    break;
+                case "--fragmented":
+                    fragmented = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown spool re-encode argument: " + arg
+                    );
+            }
+        }
+        if (output == null) {
+            String name = spoolPath.getFileName().toString();
+            int lastDot = name.lastIndexOf('.');
+            String stem = lastDot > 0 ? name.substring(0, lastDot) : name;
+            output = spoolPath.resolveSibling(stem + "." + profile.extension());
+        }
+
+        long start = System.nanoTime();
+        int frames;
+        try (FrameSpool spool = FrameSpool.open(spoolPath)) {
+            frames = encode(
+                spool,
+                output.toAbsolutePath().normalize(),
+                profile,
+                fps != null ? fps : spool.fps(),
+                fragmented
+            );
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Unable to read frame spool: " + spoolPath,
+                ex
+            );
+        }
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Re-encoded %d frame(s) from %s -> %s (%s) in %.1fs",
+                frames,
+                spoolPath,
+                output,
+                profile.id(),
+                (System.nanoTime() - start) / 1_000_000_000.0
+            )
+        );
+    }
+
+    private static int encode(
+        FrameSpool spool,
+        Path output,
+        EncoderProfile profile,
+        int fps,
+        boolean fragmented
+    ) throws IOException {
+        if (spool.frameCount() < spool.capacity()) {
+            App.logWarn(
+                "Spool holds " + spool.frameCount() + " of " + spool.capacity() +
+                    " frame(s); missing frames are skipped."
+            );
+        }
+        Path parent = output.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FFmpegFrameRecorder recorder = profile.newRecorder(
+            output,
+            spool.width(),
+            spool.height(),
+            fps,
+            false,
+            fragmented
+        );
+        int frames = 0;
+        try {
+            recorder.start();
+            for (int i = 0; i < spool.capacity(); i++) {
+                if (!spool.hasFrame(i)) {
+                    continue;
+                }
+                ByteBuffer pixels = spool.frame(i);
+                recorder.recordImage(
+                    spool.width(),
+                    spool.height(),
+                    Frame.DEPTH_UBYTE,
+                    4,
+                    spool.stride(),
+                    avutil.AV_PIX_FMT_RGBA,
+                    pixels
+                );
+                frames++;
+            }
+            recorder.stop();
+        } catch (FFmpegFrameRecorder.Exception ex) {
+            throw new IllegalStateException("Failed to encode " + output, ex);
+        } finally {
+            try {
+                recorder.release();
+            } catch (FFmpegFrameRecorder.Exception ex) {
+                App.logWarn("Unable to release encoder: " + ex.getMessage());
+            }
+        }
+        return frames;
+    }
+
+    private static String value(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Expected a value after " + flag);
+        }
+        return args[index];
+    }
+}
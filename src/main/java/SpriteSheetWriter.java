@@ -0,0 +1,274 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Packs kept frames into grid sprite sheets plus one JSON index instead of a
+ * PNG per frame. Only one band of frames (a sheet row) is buffered: pipeline
+ * workers copy frames into their cell, and the worker completing a band
+ * streams its rows into the open sheet. Frames of later bands wait for the
+ * current band, so memory stays at one band whatever the frame count.
+ */
+final class SpriteSheetWriter implements AutoCloseable {
+
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final String INDEX_FILE = "sheet.json";
+
+    private final PngEncoder encoder;
+    private final Path directory;
+    private final int frameWidth;
+    private final int frameHeight;
+    private final int frames;
+    private final int fps;
+    private final int columns;
+    private final int bandsPerSheet;
+    private final int sheets;
+    private final ByteBuffer band;
+    private final long startNanos = System.nanoTime();
+
+    private int currentBand;
+    private int filled;
+    private OutputStream sheetOut;
+    private PngEncoder.RowWriter sheetRows;
+    private long writtenBytes;
+    private Throwable failure;
+
+    SpriteSheetWriter(
+        PngEncoder encoder,
+        Path directory,
+        int frameWidth,
+        int frameHeight,
+        int frames,
+        int fps,
+        int columns,
+        int maxSize
+    ) {
+        this.encoder = encoder;
+        this.directory = directory;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.frames = frames;
+        this.fps = fps;
+        this.columns = columns > 0
+            ? columns
+            : Math.max(1, Math.min(frames, maxSize / frameWidth));
+        this.bandsPerSheet = Math.max(1, maxSize / frameHeight);
+        int framesPerSheet = this.columns * bandsPerSheet;
+        this.sheets = (frames + framesPerSheet - 1) / framesPerSheet;
+        this.band = ByteBuffer.allocate(
+            this.columns * frameWidth * frameHeight * BYTES_PER_PIXEL
+        );
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    int sheets() {
+        return sheets;
+    }
+
+    /** Copies the frame into its cell; blocks until its band is current. */
+    void write(CapturedFrame frame, int index) throws Exception {
+        int frameBand = index / columns;
+        synchronized (this) {
+            while (frameBand != currentBand && failure == null) {
+                wait();
+            }
+            rethrow();
+        }
+
+        int bandStride = columns * frameWidth * BYTES_PER_PIXEL;
+        int rowBytes = frameWidth * BYTES_PER_PIXEL;
+        int cellOffset = (index % columns) * rowBytes;
+        ByteBuffer source = frame.pixels().duplicate();
+        ByteBuffer target = band.duplicate();
+        for (int y = 0; y < frameHeight; y++) {
+            source.limit((y + 1) * rowBytes).position(y * rowBytes);
+            target.position(y * bandStride + cellOffset);
+            target.put(source);
+        }
+
+        synchronized (this) {
+            filled++;
+            if (filled == framesInBand(frameBand)) {
+                try {
+                    flushBand(frameBand);
+                } catch (Exception | Error ex) {
+                    failure = ex;
+                    notifyAll();
+                    throw ex;
+                }
+                currentBand++;
+                filled = 0;
+                notifyAll();
+            }
+        }
+    }
+
+    /** Checks that every frame arrived and writes the JSON index. */
+    synchronized void finish() throws Exception {
+        rethrow();
+        int bands = (frames + columns - 1) / columns;
+        if (currentBand != bands) {
+            throw new IllegalStateException(
+                "Sprite sheet is missing frames (" + currentBand + " of " + bands + " rows written)."
+            );
+        }
+        byte[] index = index().getBytes(StandardCharsets.UTF_8);
+        Files.write(directory.resolve(INDEX_FILE), index);
+        writtenBytes += index.length;
+
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        long rawBytes = (long) frames * frameWidth * frameHeight * BYTES_PER_PIXEL;
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Sprite sheets: %d frame(s) in %d sheet(s) of %d column(s) + %s, %.1f MB on disk (%.1f%% of raw), %.1f MB/s raw throughput",
+                frames,
+                sheets,
+                columns,
+                INDEX_FILE,
+                writtenBytes / 1_048_576.0,
+                rawBytes == 0 ? 0.0 : 100.0 * writtenBytes / rawBytes,
+                seconds > 0 ? rawBytes / 1_048_576.0 / seconds : 0.0
+            )
+        );
+    }
+
+    @Override
+    public synchronized void close() {
+        if (failure == null && currentBand * columns < frames) {
+            failure = new IllegalStateException("Sprite sheet writer aborted.");
+            notifyAll();
+        }
+        closeSheet();
+    }
+
+    private void flushBand(int bandIndex) throws IOException {
+        int sheet = bandIndex / bandsPerSheet;
+        int bandInSheet = bandIndex % bandsPerSheet;
+        if (bandInSheet == 0) {
+            Path path = directory.resolve(sheetName(sheet));
+            sheetOut = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+            sheetRows = encoder.openRows(
+                sheetOut,
+                columns * frameWidth,
+                bandsInSheet(sheet) * frameHeight
+            );
+        }
+        sheetRows.write(band, frameHeight);
+        // A short last band leaves empty cells; clear them for the next sheet.
+        Arrays.fill(band.array(), (byte) 0);
+        if (bandInSheet == bandsInSheet(sheet) - 1) {
+            sheetRows.finish();
+            sheetOut.flush();
+            writtenBytes += Files.size(directory.resolve(sheetName(sheet)));
+            closeSheet();
+        }
+    }
+
+    private void closeSheet() {
+        if (sheetRows != null) {
+            sheetRows.close();
+            sheetRows = null;
+        }
+        if (sheetOut != null) {
+            try {
+                sheetOut.close();
+            } catch (IOException ex) {
+                App.logWarn("Unable to close sprite sheet: " + ex.getMessage());
+            }
+            sheetOut = null;
+        }
+    }
+
+    private int framesInBand(int bandIndex) {
+        return Math.min(columns, frames - bandIndex * columns);
+    }
+
+    private int framesInSheet(int sheet) {
+        int framesPerSheet = columns * bandsPerSheet;
+        return Math.min(framesPerSheet, frames - sheet * framesPerSheet);
+    }
+
+    private int bandsInSheet(int sheet) {
+        return (framesInSheet(sheet) + columns - 1) / columns;
+    }
+
+    private static String sheetName(int sheet) {
+        return String.format(Locale.ROOT, "sheet_%03d.png", sheet);
+    }
+
+    // Multi-atlas layout understood by common 2D engines (e.g. Phaser's
+    // multiatlas loader); every frame is untrimmed and unrotated.
+    private String index() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"textures\": [");
+        int frame = 0;
+        for (int sheet = 0; sheet < sheets; sheet++) {
+            json.append(sheet == 0 ? "\n" : ",\n");
+            json.append("    {\n");
+            json.append("      \"image\": \"").append(sheetName(sheet)).append("\",\n");
+            json.append("      \"format\": \"RGBA8888\",\n");
+            json.append("      \"size\": ");
+            appendSize(json, columns * frameWidth, bandsInSheet(sheet) * frameHeight);
+            json.append(",\n      \"scale\": 1,\n      \"frames\": [");
+            int count = framesInSheet(sheet);
+            for (int i = 0; i < count; i++, frame++) {
+                int x = (i % columns) * frameWidth;
+                int y = (i / columns) * frameHeight;
+                json.append(i == 0 ? "\n" : ",\n");
+                json.append(
+                    String.format(
+                        Locale.ROOT,
+                        "        {\"filename\": \"frame_%05d\", \"frame\": {\"x\": %d, \"y\": %d, \"w\": %d, \"h\": %d}, " +
+                            "\"rotated\": false, \"trimmed\": false, " +
+                            "\"spriteSourceSize\": {\"x\": 0, \"y\": 0, \"w\": %d, \"h\": %d}, " +
+                            "\"sourceSize\": {\"w\": %d, \"h\": %d}, \"duration\": %.3f}",
+                        frame,
+                        x,
+                        y,
+                        frameWidth,
+                        frameHeight,
+                        frameWidth,
+                        frameHeight,
+                        frameWidth,
+                        frameHeight,
+                        1000.0 / fps
+                    )
+                );
+            }
+            json.append("\n      ]\n    }");
+        }
+        json.append("\n  ],\n  \"meta\": {\n");
+        json.append("    \"app\": \"create_preview\",\n");
+        json.append("    \"fps\": ").append(fps).append(",\n");
+        json.append("    \"frames\": ").append(frames).append(",\n");
+        json.append("    \"columns\": ").append(columns).append(",\n");
+        json.append("    \"frameSize\": ");
+        appendSize(json, frameWidth, frameHeight);
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    private static void appendSize(StringBuilder json, int width, int height) {
+        json.append("{\"w\": ").append(width).append(", \"h\": ").append(height).append('}');
+    }
+
+    private void rethrow() throws Exception {
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+}
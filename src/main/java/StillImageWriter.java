@@ -0,0 +1,243 @@
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Writes single preview images. PNGs are compressed in parallel row blocks;
+ * WebP and AVIF are encoded by the bundled FFmpeg straight from the RGBA
+ * frame.
+ */
+final class StillImageWriter {
+
+    // Matches the size PixmapIO produced before (zlib's default level).
+    private static final int STILL_LEVEL = 6;
+    private static final int DEFAULT_WEBP_SPEED = 2;
+    private static final int MAX_WEBP_SPEED = 6;
+    private static final int DEFAULT_AVIF_SPEED = 6;
+    private static final int MAX_AVIF_SPEED = 8;
+    private static final int MAX_AV1_CRF = 63;
+    private static final long DEFLATE_IDLE_SECONDS = 30;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static ThreadPoolExecutor deflaters;
+
+    private final PngEncoder encoder = new PngEncoder(
+        STILL_LEVEL,
+        PngEncoder.Filter.PAETH
+    );
+    private final App.CliArguments arguments;
+    private final int threads;
+
+    StillImageWriter(App.CliArguments arguments) {
+        this.arguments = arguments;
+        this.threads = Math.max(1, arguments.pngThreads());
+    }
+
+    void write(Path path, CapturedFrame frame) {
+        App.CliArguments.ImageFormat format = arguments.imageFormat();
+        long start = System.nanoTime();
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            long bytes;
+            String detail;
+            switch (format) {
+                case WEBP:
+                    bytes = writeWebp(path, frame);
+                    detail = arguments.imageLossless()
+                        ? "lossless"
+                        : "quality " + arguments.imageQuality();
+                    break;
+                case AVIF:
+                    bytes = writeAvif(path, frame);
+                    detail = arguments.imageLossless()
+                        ? "lossless"
+                        : "quality " + arguments.imageQuality();
+                    break;
+                case PNG:
+                default:
+                    bytes = writePng(path, frame);
+                    detail = threads + " thread(s)";
+                    break;
+            }
+            App.logInfo(
+                String.format(
+                    Locale.ROOT,
+                    "%s encoded in %.1f ms (%s), %.1f KB",
+                    format.name(),
+                    (System.nanoTime() - start) / 1_000_000.0,
+                    detail,
+                    bytes / 1024.0
+                )
+            );
+        } catch (Exception ex) {
+            throw new IllegalStateException(
+                "Unable to write " + format.extension() + " image: " + path,
+                ex
+            );
+        }
+    }
+
+    private long writePng(Path path, CapturedFrame frame) throws IOException {
+        return encoder.write(
+            path,
+            frame.pixmap().getPixels(),
+            frame.width(),
+            frame.height(),
+            threads > 1 ? deflaters(threads) : null
+        );
+    }
+
+    // One pool for the whole process: a writer is built per job, so a pool
+    // per writer would start fresh threads for every batch or daemon job.
+    // The pool grows to the largest --png-threads any job asked for, and its
+    // daemon threads exit after idling.
+    private static ExecutorService deflaters(int threads) {
+        synchronized (StillImageWriter.class) {
+            if (deflaters == null) {
+                deflaters = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    DEFLATE_IDLE_SECONDS,
+                    TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(
+                            runnable,
+                            "png-deflate-" + THREAD_COUNTER.incrementAndGet()
+                        );
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                );
+                deflaters.allowCoreThreadTimeOut(true);
+            } else if (threads > deflaters.getMaximumPoolSize()) {
+                deflaters.setMaximumPoolSize(threads);
+                deflaters.setCorePoolSize(threads);
+            }
+            return deflaters;
+        }
+    }
+
+    private long writeWebp(Path path, CapturedFrame frame) throws Exception {
+        int speed = speed(DEFAULT_WEBP_SPEED, MAX_WEBP_SPEED);
+        FFmpegFrameRecorder recorder = newRecorder(path, frame, "webp");
+        recorder.setVideoCodecName("libwebp");
+        // libwebp's "compression_level" is its method: 0 fast .. 6 small.
+        recorder.setVideoOption(
+            "compression_level",
+            Integer.toString(MAX_WEBP_SPEED - speed)
+        );
+        recorder.setVideoOption(
+            "quality",
+            Integer.toString(arguments.imageQuality())
+        );
+        if (arguments.imageLossless()) {
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_BGRA);
+            recorder.setVideoOption("lossless", "1");
+        } else {
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_YUVA420P);
+        }
+        return encode(recorder, path, frame);
+    }
+
+    private long writeAvif(Path path, CapturedFrame frame) throws Exception {
+        if (hasTranslucentPixels(frame)) {
+            App.logWarn(
+                "AVIF output is written without an alpha plane; transparent areas will be opaque. " +
+                    "Use PNG or WebP to keep transparency."
+            );
+        }
+        int speed = speed(DEFAULT_AVIF_SPEED, MAX_AVIF_SPEED);
+        FFmpegFrameRecorder recorder = newRecorder(path, frame, "avif");
+        recorder.setVideoCodecName("libaom-av1");
+        recorder.setVideoBitrate(0);
+        recorder.setVideoOption("cpu-used", Integer.toString(speed));
+        recorder.setVideoOption("still-picture", "1");
+        if (arguments.imageLossless()) {
+            // YUV 4:4:4 would still round through the RGB to YCbCr matrix;
+            // planar GBR tagged with the identity matrix keeps the RGB exact.
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_GBRP);
+            recorder.setVideoOption("colorspace", "rgb");
+            recorder.setVideoOption("color_range", "pc");
+            recorder.setVideoOption("crf", "0");
+            recorder.setVideoOption("aom-params", "lossless=1");
+        } else {
+            int crf = Math.round(
+                MAX_AV1_CRF * (100 - arguments.imageQuality()) / 100f
+            );
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+            recorder.setVideoOption("crf", Integer.toString(crf));
+        }
+        return encode(recorder, path, frame);
+    }
+
+    private FFmpegFrameRecorder newRecorder(
+        Path path,
+        CapturedFrame frame,
+        String format
+    ) {
+        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(
+            path.toString(),
+            frame.width(),
+            frame.height(),
+            0
+        );
+        recorder.setFormat(format);
+        recorder.setFrameRate(1);
+        return recorder;
+    }
+
+    private long encode(
+        FFmpegFrameRecorder recorder,
+        Path path,
+        CapturedFrame frame
+    ) throws Exception {
+        try {
+            recorder.start();
+            recorder.recordImage(
+                frame.width(),
+                frame.height(),
+                Frame.DEPTH_UBYTE,
+                4,
+                frame.width() * 4,
+                avutil.AV_PIX_FMT_RGBA,
+                frame.pixels()
+            );
+            recorder.stop();
+        } finally {
+            recorder.release();
+        }
+        return Files.size(path);
+    }
+
+    private int speed(int defaultSpeed, int maxSpeed) {
+        Integer requested = arguments.imageSpeed();
+        if (requested == null) {
+            return defaultSpeed;
+        }
+        return Math.min(maxSpeed, requested);
+    }
+
+    private static boolean hasTranslucentPixels(CapturedFrame frame) {
+        ByteBuffer pixels = frame.pixels();
+        for (int i = 3; i < pixels.limit(); i += 4) {
+            if (pixels.get(i) != (byte) 0xff) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Directory-backed queue of delivery transcodes. Each job is a properties
+ * file that moves from {@code pending/} to {@code running/} when a worker
+ * claims it (an atomic rename, so concurrent workers never share a job) and
+ * then to {@code done/} or {@code failed/}.
+ *
+ * <p>A claimed job is a {@link LeaseHeartbeat} lease named
+ * {@code running/<id>.<claim>.job}, where the claim number grows each time
+ * the job is claimed. A running job that goes stale belongs to a dead worker
+ * and is moved back to {@code pending/} by the next claim, so a crash costs
+ * a re-encode rather than the job. A worker that was only stalled finds its
+ * claim file gone, so it cannot complete or fail the new claimer's job.
+ */
+final class TranscodeQueue implements AutoCloseable {
+
+    private static final String PENDING = "pending";
+    private static final String RUNNING = "running";
+    private static final String DONE = "done";
+    private static final String FAILED = "failed";
+    private static final String JOB_SUFFIX = ".job";
+
+    private final Path root;
+    private final LeaseHeartbeat leases;
+
+    private TranscodeQueue(Path root, LeaseHeartbeat leases) {
+        this.root = root;
+        this.leases = leases;
+    }
+
+    /** Opens the queue for enqueueing only. */
+    static TranscodeQueue open(Path root) throws IOException {
+        return open(root, 0);
+    }
+
+    /**
+     * Opens the queue for claiming: running jobs are renewed every third of
+     * {@code leaseSeconds} and recovered once they miss a whole lease.
+     */
+    static TranscodeQueue open(Path root, int leaseSeconds) throws IOException {
+        return open(
+            root,
+            new LeaseHeartbeat("transcode-heartbeat", TimeUnit.SECONDS.toMillis(leaseSeconds))
+        );
+    }
+
+    static TranscodeQueue open(Path root, LeaseHeartbeat leases) throws IOException {
+        for (String state : new String[] { PENDING, RUNNING, DONE, FAILED }) {
+            Files.createDirectories(root.resolve(state));
+        }
+        return new TranscodeQueue(root.toAbsolutePath().normalize(), leases);
+    }
+
+    Path root() {
+        return root;
+    }
+
+    Path enqueue(
+        Path source,
+        Path output,
+        EncoderProfile profile,
+        boolean fragmented,
+        boolean deleteSource
+    ) throws IOException {
+        if (source.toAbsolutePath().normalize().equals(output.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException(
+                "A transcode job cannot write over its own source: " + source
+            );
+        }
+        String id = String.format(
+            Locale.ROOT,
+            "%013d-%s",
+            System.currentTimeMillis(),
+            UUID.randomUUID().toString().substring(0, 8)
+        );
+        Properties properties = new Properties();
+        properties.setProperty("source", source.toAbsolutePath().toString());
+        properties.setProperty("output", output.toAbsolutePath().toString());
+        properties.setProperty("profile", profile.id());
+        properties.setProperty("fragmented", Boolean.toString(fragmented));
+        properties.setProperty("deleteSource", Boolean.toString(deleteSource));
+
+        Path temp = root.resolve(PENDING).resolve("." + id + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "create_preview transcode job");
+        }
+        Path job = root.resolve(PENDING).resolve(id + JOB_SUFFIX);
+        move(temp, job);
+        return job;
+    }
+
+    /** Claims the oldest pending job, or returns {@code null} when none is left. */
+    Job claim() throws IOException {
+        if (leases.leaseMillis() <= 0) {
+            throw new IllegalStateException("Transcode queue was opened without a lease.");
+        }
+        recoverStale();
+        for (Path pending : list(PENDING)) {
+            String id = id(pending);
+            Path running;
+            try {
+                int claim = Integer.parseInt(load(pending).getProperty("claims", "0")) + 1;
+                running = root.resolve(RUNNING).resolve(id + "." + claim + JOB_SUFFIX);
+                // Fresh mtime before the rename, so the job never looks stale
+                // in running/ while its owner is being recorded.
+                leases.touch(pending);
+                move(pending, running);
+            } catch (NoSuchFileException | FileAlreadyExistsException ex) {
+                continue; // Another worker got there first.
+            }
+            Properties properties;
+            try {
+                properties = load(running);
+                properties.setProperty("owner", leases.owner() + "/" + Thread.currentThread().getName());
+                properties.setProperty("claimed", Long.toString(leases.now()));
+                properties.setProperty("claims", claimOf(running));
+                store(running, properties);
+                leases.hold(running);
+            } catch (NoSuchFileException ex) {
+                continue; // Recovered by another worker before we recorded it.
+            }
+            return new Job(running, properties);
+        }
+        return null;
+    }
+
+    /** True while {@code job} is still this worker's claim. */
+    boolean holds(Job job) {
+        return Files.exists(job.file);
+    }
+
+    /**
+     * Moves the job to {@code done/}. Returns false, and changes nothing, if
+     * the claim expired and the job was recovered by another worker.
+     */
+    boolean complete(Job job) throws IOException {
+        leases.release(job.file);
+        try {
+            move(job.file, root.resolve(DONE).resolve(job.id() + JOB_SUFFIX));
+            return true;
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+    }
+
+    /** Moves the job to {@code failed/}; returns false like {@link #complete}. */
+    boolean fail(Job job, Throwable error) throws IOException {
+        leases.release(job.file);
+        job.properties.setProperty("error", String.valueOf(error.getMessage()));
+        try {
+            store(job.file, job.properties);
+            move(job.file, root.resolve(FAILED).resolve(job.id() + JOB_SUFFIX));
+            return true;
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+    }
+
+    /** Returns every job this process is running to {@code pending/}. */
+    void releaseActive() {
+        for (Path running : leases.held()) {
+            leases.release(running);
+            String id = id(running);
+            try {
+                move(running, root.resolve(PENDING).resolve(id + JOB_SUFFIX));
+                App.logWarn("Returned job " + id + " to the queue.");
+            } catch (IOException ex) {
+                App.logWarn("Unable to return job " + id + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        leases.close();
+    }
+
+    // A rename is atomic, so of several workers recovering the same job only
+    // one succeeds.
+    private void recoverStale() throws IOException {
+        for (Path running : list(RUNNING)) {
+            try {
+                if (!leases.isStale(running)) {
+                    continue;
+                }
+                String holder = readOwner(running);
+                move(running, root.resolve(PENDING).resolve(id(running) + JOB_SUFFIX));
+                App.logWarn(
+                    "Job " + running.getFileName() + " held by " + holder +
+                        " has expired; returned it to the queue."
+                );
+            } catch (NoSuchFileException | FileAlreadyExistsException ex) {
+                // Finished or recovered by someone else meanwhile.
+            }
+        }
+    }
+
+    private static String readOwner(Path file) {
+        try {
+            return load(file).getProperty("owner", "?");
+        } catch (IOException ex) {
+            return "?";
+        }
+    }
+
+    // Job ids have no dots; running files add ".<claim>" before the suffix.
+    private static String id(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.indexOf('.'));
+    }
+
+    private static String claimOf(Path running) {
+        String name = running.getFileName().toString();
+        return name.substring(name.indexOf('.') + 1, name.length() - JOB_SUFFIX.length());
+    }
+
+    // Never creates the file: a job moved away meanwhile must stay gone.
+    private static void store(Path file, Properties properties) throws IOException {
+        try (
+            OutputStream out = Files.newOutputStream(
+                file,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
+        ) {
+            properties.store(out, "create_preview transcode job");
+        }
+    }
+
+    private List<Path> list(String state) throws IOException {
+        List<Path> jobs = new ArrayList<>();
+        try (
+            DirectoryStream<Path> stream = Files.newDirectoryStream(
+                root.resolve(state),
+                "*" + JOB_SUFFIX
+            )
+        ) {
+            for (Path job : stream) {
+                jobs.add(job);
+            }
+        }
+        Collections.sort(jobs);
+        return jobs;
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(from, to);
+        }
+    }
+
+    static final class Job {
+
+        private final Path file;
+        private final Properties properties;
+
+        private Job(Path file, Properties properties) {
+            this.file = file;
+            this.properties = properties;
+        }
+
+        String id() {
+            return TranscodeQueue.id(file);
+        }
+
+        /** How many times the job has been claimed, this claim included. */
+        String claim() {
+            return properties.getProperty("claims");
+        }
+
+        Path source() {
+            return Paths.get(properties.getProperty("source"));
+        }
+
+        Path output() {
+            return Paths.get(properties.getProperty("output"));
+        }
+
+        EncoderProfile profile() {
+            return EncoderProfile.parse(properties.getProperty("profile"));
+        }
+
+        boolean fragmented() {
+            return Boolean.parseBoolean(properties.getProperty("fragmented"));
+        }
+
+        boolean deleteSource() {
+            return Boolean.parseBoolean(properties.getProperty("deleteSource"));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+/**
+ * Drains a {@link TranscodeQueue}, re-encoding lossless intermediates with
+ * their delivery profile. Runs without GL so it can live on CPU-only nodes.
+ */
+final class TranscodeWorker {
+
+    private static final int DEFAULT_POLL_SECONDS = 5;
+    private static final int DEFAULT_LEASE_SECONDS = 300;
+
+    private TranscodeWorker() {}
+
+    static void run(String[] args) throws InterruptedException {
+        Path queueDir = null;
+        int concurrency = 1;
+        int pollSeconds = DEFAULT_POLL_SECONDS;
+        int leaseSeconds = DEFAULT_LEASE_SECONDS;
+        boolean once = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--queue":
+                    queueDir = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--poll-seconds":
+                    pollSeconds = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--lease-seconds":
+                    leaseSeconds = Integer.parseInt(value(args, ++i, arg));
+                    if (leaseSeconds <= 0) {
+                        throw new IllegalArgumentException(
+                            "--lease-seconds expects a positive integer."
+                        );
+                    }
+                    break;
+                case "--once":
+                    once = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                        "Unknown transcode worker argument: " + arg
+                    );
+            }
+        }
+        if (queueDir == null) {
+            throw new IllegalArgumentException(
+                "--transcode-worker needs --queue DIR."
+            );
+        }
+
+        TranscodeQueue queue;
+        try {
+            queue = TranscodeQueue.open(queueDir, leaseSeconds);
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Unable to open transcode queue: " + queueDir,
+                ex
+            );
+        }
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Transcode worker on %s with %d slot(s)%s",
+                queue.root(),
+                Math.max(1, concurrency),
+                once ? ", exiting when the queue is empty" : ""
+            )
+        );
+
+        // Ctrl-C or a kill hands the running jobs back instead of waiting
+        // a whole lease for another worker to recover them.
+        Runtime.getRuntime().addShutdownHook(
+            new Thread(queue::releaseActive, "transcode-release")
+        );
+
+        boolean drainOnce = once;
+        long pollMillis = Math.max(1, pollSeconds) * 1000L;
+        List<Thread> slots = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, concurrency); i++) {
+            Thread slot = new Thread(
+                () -> drain(queue, drainOnce, pollMillis),
+                "transcode-" + (i + 1)
+            );
+            slot.start();
+            slots.add(slot);
+        }
+        try {
+            for (Thread slot : slots) {
+                slot.join();
+            }
+        } finally {
+            queue.close();
+        }
+    }
+
+    private static void drain(TranscodeQueue queue, boolean once, long pollMillis) {
+        while (!Thread.currentThread().isInterrupted()) {
+            TranscodeQueue.Job job;
+            try {
+                job = queue.claim();
+            } catch (Exception ex) {
+                App.logError("Unable to read transcode queue", ex);
+                return;
+            }
+            if (job == null) {
+                if (once) {
+                    return;
+                }
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                continue;
+            }
+            process(queue, job);
+        }
+    }
+
+    // The worker encodes into a hidden file next to the output and only
+    // publishes it, and deletes the source, while it still holds the job; a
+    // worker that stalled past its lease leaves both to the new claimer.
+    private static void process(TranscodeQueue queue, TranscodeQueue.Job job) {
+        long start = System.nanoTime();
+        Path partial = partialPath(job);
+        try {
+            int frames = transcode(
+                job.source(),
+                partial,
+                job.profile(),
+                job.fragmented()
+            );
+            if (!queue.holds(job)) {
+                Files.deleteIfExists(partial);
+                logTakenOver(job);
+                return;
+            }
+            Files.move(partial, job.output(), StandardCopyOption.REPLACE_EXISTING);
+            if (!queue.complete(job)) {
+                logTakenOver(job);
+                return;
+            }
+            if (job.deleteSource()) {
+                Files.deleteIfExists(job.source());
+            }
+            App.logInfo(
+                String.format(
+                    Locale.ROOT,
+                    "Job %s: %d frame(s) -> %s (%s) in %.1fs",
+                    job.id(),
+                    frames,
+                    job.output(),
+                    job.profile().id(),
+                    (System.nanoTime() - start) / 1_000_000_000.0
+                )
+            );
+        } catch (Exception ex) {
+            App.logError("Job " + job.id() + " failed: " + ex.getMessage(), ex);
+            try {
+                Files.deleteIfExists(partial);
+                if (!queue.fail(job, ex)) {
+                    logTakenOver(job);
+                }
+            } catch (Exception moveEx) {
+                App.logError("Unable to mark job " + job.id() + " failed", moveEx);
+            }
+        }
+    }
+
+    private static Path partialPath(TranscodeQueue.Job job) {
+        Path output = job.output();
+        return output.resolveSibling(
+            "." + output.getFileName() + "." + job.id() + "." + job.claim() + ".partial"
+        );
+    }
+
+    private static void logTakenOver(TranscodeQueue.Job job) {
+        App.logWarn(
+            "Job " + job.id() + " expired and was recovered by another worker; leaving it to that worker."
+        );
+    }
+
+    static int transcode(
+        Path source,
+        Path output,
+        EncoderProfile profile,
+        boolean fragmented
+    ) throws Exception {
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(source.toString());
+        grabber.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
+        FFmpegFrameRecorder recorder = null;
+        int frames = 0;
+        try {
+            grabber.start();
+            Path parent = output.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            recorder = profile.newRecorder(
+                output,
+                grabber.getImageWidth(),
+                grabber.getImageHeight(),
+                (int) Math.round(grabber.getFrameRate()),
+                false,
+                fragmented
+            );
+            recorder.start();
+            Frame frame;
+            while ((frame = grabber.grabImage()) != null) {
+                recorder.record(frame, avutil.AV_PIX_FMT_YUV420P);
+                frames++;
+            }
+            recorder.stop();
+            grabber.stop();
+        } finally {
+            if (recorder != null) {
+                recorder.release();
+            }
+            grabber.release();
+        }
+        return frames;
+    }
+
+    private static String value(String[] args, int index, String flag) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Expected a value after " + flag);
+        }
+        return args[index];
+    }
+}
@@ -1,30 +1,41 @@
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.files.FileHandle;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.PixmapIO;
 import com.esotericsoftware.spine.AnimationState;
 import com.esotericsoftware.spine.Skeleton;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
+import com.github.oscarne.createpreview.CapturedFrame;
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
-import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.avcodec.AVPacket;
 import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
 import org.bytedeco.javacv.FFmpegFrameRecorder;
-import org.bytedeco.javacv.Java2DFrameConverter;
+import org.bytedeco.javacv.Frame;
 
 public final class VideoGenerator {
 
+    private static final int STREAM_BUFFER_SIZE = 1 << 20;
+
     private final App app;
     private final App.CliArguments arguments;
     private final FrameRenderer frameRenderer;
     private final Skeleton skeleton;
     private final AnimationState animationState;
-    private final Java2DFrameConverter frameConverter = new Java2DFrameConverter();
+    private final EncoderProfile profile;
+    // Null when the video is streamed to standard output.
+    private final Path videoTarget;
+    private ThreadLocal<CpuYuvConverter> cpuYuvConverter;
+    private PngFrameWriter pngWriter;
+    private SpriteSheetWriter sheetWriter;
+    private FrameSpool spool;
 
     VideoGenerator(
         App app,
@@ -38,9 +49,17 @@ public final class VideoGenerator {
         this.frameRenderer = frameRenderer;
         this.skeleton = skeleton;
         this.animationState = animationState;
+        if (arguments.intermediateProfile() != null) {
+            this.profile = arguments.intermediateProfile();
+            this.videoTarget = intermediatePath(arguments.videoOutput(), profile);
+        } else {
+            this.profile = arguments.encoderProfile();
+            this.videoTarget = arguments.videoOutput();
+        }
     }
 
-    public void generate() {
+    /** Frames covered by the requested duration or loop mode; at least one. */
+    int frameCount() {
         int fps = arguments.fps();
         if (fps <= 0) {
             throw new IllegalArgumentException("FPS must be greater than zero.");
@@ -50,8 +69,12 @@ public final class VideoGenerator {
         if (requestedSeconds <= 0f) {
             requestedSeconds = 1f / fps;
         }
+        return Math.max(1, Math.round(requestedSeconds * fps));
+    }
 
-        int frames = Math.max(1, Math.round(requestedSeconds * fps));
+    public void generate() {
+        int fps = arguments.fps();
+        int frames = frameCount();
         float totalSeconds = frames / (float) fps;
         float step = 1f / fps;
         Path framesDir = arguments.framesDir();
@@ -63,17 +86,20 @@ public final class VideoGenerator {
                 frames,
                 totalSeconds,
                 fps,
-                arguments.videoOutput()
+                destination()
             )
         );
 
         if (arguments.outputPath() != null) {
-            Pixmap preview = frameRenderer.renderFrame(skeleton);
+            CapturedFrame preview = frameRenderer.renderFrame(skeleton);
             try {
-                writePixmap(arguments.outputPath(), preview);
+                new StillImageWriter(arguments).write(
+                    arguments.outputPath(),
+                    preview
+                );
                 App.logInfo("Preview image written to " + arguments.outputPath());
             } finally {
-                preview.dispose();
+                preview.release();
             }
         }
 
@@ -93,76 +119,571 @@ public final class VideoGenerator {
             App.logInfo("Intermediate frames will be discarded after encoding.");
         }
 
+        configureCaptureLayout();
+
+        FramePool framePool = frameRenderer.framePool();
+        long allocationsBefore = framePool.allocations();
+        long acquisitionsBefore = framePool.acquisitions();
+        int segments = Math.min(arguments.videoSegments(), frames);
+        if (
+            segments > 1 &&
+            (arguments.animationFormat() != null || arguments.rawFormat() != null)
+        ) {
+            App.logWarn("Animated and raw output are written serially; ignoring --video-segments.");
+            segments = 1;
+        }
+        if (segments > 1 && arguments.spriteSheet()) {
+            App.logWarn("Sprite sheets are filled in frame order; ignoring --video-segments.");
+            segments = 1;
+        }
+        Exception encodeError = null;
+        try {
+            if (arguments.spriteSheet()) {
+                sheetWriter = new SpriteSheetWriter(
+                    new PngEncoder(arguments.pngLevel(), arguments.pngFilter()),
+                    framesDir,
+                    frameRenderer.getOutputWidth(),
+                    frameRenderer.getOutputHeight(),
+                    frames,
+                    fps,
+                    arguments.sheetColumns(),
+                    arguments.sheetMaxSize()
+                );
+                App.logInfo(
+                    String.format(
+                        Locale.ROOT,
+                        "Packing frames into %d sprite sheet(s) of %d column(s).",
+                        sheetWriter.sheets(),
+                        sheetWriter.columns()
+                    )
+                );
+            } else if (arguments.keepFrames()) {
+                pngWriter = new PngFrameWriter(
+                    new PngEncoder(arguments.pngLevel(), arguments.pngFilter()),
+                    arguments.pngWriters(),
+                    arguments.pipelineDepth()
+                );
+            }
+            if (arguments.spoolPath() != null) {
+                spool = FrameSpool.create(
+                    arguments.spoolPath(),
+                    frameRenderer.getOutputWidth(),
+                    frameRenderer.getOutputHeight(),
+                    fps,
+                    frames
+                );
+                App.logInfo(
+                    String.format(
+                        Locale.ROOT,
+                        "Spooling raw frames to %s (%.1f MB preallocated)",
+                        arguments.spoolPath(),
+                        Files.size(arguments.spoolPath()) / 1_048_576.0
+                    )
+                );
+            }
+            if (segments > 1) {
+                encodeSegments(frames, step, fps, segments, framesDir);
+            } else {
+                encodeSerial(frames, step, fps, framesDir);
+            }
+            if (pngWriter != null) {
+                pngWriter.finish();
+            }
+            if (sheetWriter != null) {
+                sheetWriter.finish();
+            }
+            if (spool != null) {
+                spool.finish();
+                App.logInfo(
+                    "Spooled " + spool.frameCount() + " frame(s); re-encode with --reencode-spool " +
+                        spool.path()
+                );
+            }
+        } catch (Exception ex) {
+            encodeError = ex;
+        } finally {
+            if (pngWriter != null) {
+                pngWriter.close();
+                pngWriter = null;
+            }
+            if (sheetWriter != null) {
+                sheetWriter.close();
+                sheetWriter = null;
+            }
+            if (spool != null) {
+                spool.close();
+                spool = null;
+            }
+        }
+
+        if (encodeError != null) {
+            App.logError(
+                "Failed to encode video: " + encodeError.getMessage(),
+                encodeError
+            );
+            throw new IllegalStateException(
+                "Failed to encode video",
+                encodeError
+            );
+        }
+
+        App.logInfo("Video preview written to " + destination());
+        if (arguments.intermediateProfile() != null) {
+            enqueueTranscode();
+        }
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Frame buffers: %d allocated for %d frame(s)",
+                framePool.allocations() - allocationsBefore,
+                framePool.acquisitions() - acquisitionsBefore
+            )
+        );
+
+        if (!arguments.keepFrames()) {
+            deleteFrames(framesDir);
+        }
+    }
+
+    private void encodeSerial(int frames, float step, int fps, Path framesDir)
+        throws Exception {
         FFmpegFrameRecorder recorder = null;
+        AnimatedImageWriter animation = null;
+        RawFrameWriter raw = null;
+        FramePipeline pipeline = null;
         Exception encodeError = null;
         try {
-            recorder =
-                startRecorder(
-                    arguments.videoOutput(),
+            FramePipeline.Sink sink;
+            if (arguments.animationFormat() != null) {
+                animation = startAnimation(fps);
+                AnimatedImageWriter writer = animation;
+                sink = frame -> encodeAnimationFrame(writer, frame);
+            } else if (arguments.rawFormat() != null) {
+                App.logInfo(
+                    "Streaming raw " + arguments.rawFormat().extension() + " frames to " + destination()
+                );
+                raw = RawFrameWriter.open(
+                    videoTarget,
+                    arguments.rawFormat(),
                     frameRenderer.getOutputWidth(),
                     frameRenderer.getOutputHeight(),
                     fps
                 );
+                RawFrameWriter writer = raw;
+                sink = frame -> encodeRawFrame(writer, frame);
+            } else {
+                recorder =
+                    startRecorder(
+                        videoTarget,
+                        frameRenderer.getOutputWidth(),
+                        frameRenderer.getOutputHeight(),
+                        fps,
+                        false
+                    );
+                FFmpegFrameRecorder output = recorder;
+                sink = frame -> encodeFrame(output, frame);
+            }
+            pipeline = startPipeline(
+                sink,
+                framesDir,
+                arguments.pipelineWorkers()
+            );
 
+            int written = 0;
             for (int i = 0; i < frames; i++) {
-                Pixmap framePixmap = frameRenderer.renderFrame(skeleton);
-                try {
-                    if (arguments.keepFrames()) {
-                        Path framePath = framesDir.resolve(
-                            String.format(Locale.ROOT, "frame_%05d.png", i)
-                        );
-                        writePixmap(framePath, framePixmap);
-                    }
-                    recordFrame(recorder, framePixmap);
-                } finally {
-                    framePixmap.dispose();
+                app.checkCancelled();
+                if (!frameRenderer.canSubmitFrame()) {
+                    writeFrame(pipeline, sink, framesDir, written++);
                 }
+                frameRenderer.submitFrame(skeleton);
 
                 if (i < frames - 1) {
                     app.advanceAnimation(step);
                 }
             }
+            while (frameRenderer.pendingFrames() > 0) {
+                writeFrame(pipeline, sink, framesDir, written++);
+            }
+            if (pipeline != null) {
+                pipeline.finish();
+            }
+            if (animation != null) {
+                animation.finish();
+            }
+            if (raw != null) {
+                raw.finish();
+            }
         } catch (Exception ex) {
             encodeError = ex;
         } finally {
-            if (recorder != null) {
-                try {
-                    recorder.stop();
-                } catch (Exception stopEx) {
-                    if (encodeError != null) {
-                        encodeError.addSuppressed(stopEx);
-                    } else {
-                        encodeError = stopEx;
-                    }
+            if (pipeline != null) {
+                pipeline.close();
+            }
+            encodeError = closeRecorder(recorder, encodeError);
+            if (animation != null) {
+                animation.close();
+            }
+            if (raw != null) {
+                raw.close();
+            }
+        }
+        if (encodeError != null) {
+            throw encodeError;
+        }
+    }
+
+    // Splits the timeline into contiguous segments, each with its own
+    // skeleton replayed to the segment start and its own recorder. Frames are
+    // rendered round-robin on the GL thread so every encoder has work, then the
+    // segment files are joined by stream copy.
+    private void encodeSegments(
+        int frames,
+        float step,
+        int fps,
+        int count,
+        Path framesDir
+    ) throws Exception {
+        Path output = null;
+        Path segmentDir;
+        if (videoTarget != null) {
+            output = videoTarget.toAbsolutePath();
+            Files.createDirectories(output.getParent());
+            segmentDir = Files.createTempDirectory(output.getParent(), ".segments-");
+        } else {
+            segmentDir = Files.createTempDirectory("create-preview-segments-");
+        }
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Encoding %d segment(s) concurrently under %s",
+                count,
+                segmentDir
+            )
+        );
+
+        List<Segment> segments = new ArrayList<>();
+        Exception encodeError = null;
+        try {
+            int first = 0;
+            for (int index = 0; index < count; index++) {
+                int length = frames / count + (index < frames % count ? 1 : 0);
+                Segment segment = new Segment(
+                    app.createSkeletonInstance(),
+                    first,
+                    length,
+                    segmentDir.resolve(
+                        String.format(
+                            Locale.ROOT,
+                            "segment_%03d.%s",
+                            index,
+                            profile.extension()
+                        )
+                    )
+                );
+                segments.add(segment);
+                for (int i = 0; i < first; i++) {
+                    segment.instance.advance(step);
                 }
-                try {
-                    recorder.release();
-                } catch (Exception releaseEx) {
-                    if (encodeError != null) {
-                        encodeError.addSuppressed(releaseEx);
-                    } else {
-                        encodeError = releaseEx;
+                segment.recorder =
+                    startRecorder(
+                        segment.file,
+                        frameRenderer.getOutputWidth(),
+                        frameRenderer.getOutputHeight(),
+                        fps,
+                        true
+                    );
+                segment.pipeline = startPipeline(
+                    frame -> encodeFrame(segment.recorder, frame),
+                    framesDir,
+                    Math.max(1, arguments.pipelineWorkers() / count)
+                );
+                first += length;
+            }
+
+            ArrayDeque<Segment> inFlight = new ArrayDeque<>();
+            boolean remaining = true;
+            while (remaining) {
+                app.checkCancelled();
+                remaining = false;
+                for (Segment segment : segments) {
+                    if (segment.submitted == segment.length) {
+                        continue;
+                    }
+                    if (!frameRenderer.canSubmitFrame()) {
+                        inFlight.removeFirst().accept(frameRenderer.takeFrame());
                     }
+                    frameRenderer.submitFrame(segment.instance.skeleton());
+                    inFlight.addLast(segment);
+                    segment.submitted++;
+                    if (segment.submitted < segment.length) {
+                        segment.instance.advance(step);
+                        remaining = true;
+                    }
+                }
+            }
+            while (frameRenderer.pendingFrames() > 0) {
+                inFlight.removeFirst().accept(frameRenderer.takeFrame());
+            }
+            for (Segment segment : segments) {
+                segment.pipeline.finish();
+            }
+        } catch (Exception ex) {
+            encodeError = ex;
+        } finally {
+            for (Segment segment : segments) {
+                if (segment.pipeline != null) {
+                    segment.pipeline.close();
                 }
+                encodeError = closeRecorder(segment.recorder, encodeError);
             }
         }
 
+        try {
+            if (encodeError == null) {
+                List<Path> files = new ArrayList<>();
+                for (Segment segment : segments) {
+                    files.add(segment.file);
+                }
+                concatenateSegments(files, segmentDir, output);
+            }
+        } catch (Exception ex) {
+            encodeError = ex;
+        } finally {
+            deleteFrames(segmentDir);
+        }
         if (encodeError != null) {
-            App.logError(
-                "Failed to encode video: " + encodeError.getMessage(),
-                encodeError
+            throw encodeError;
+        }
+    }
+
+    private void concatenateSegments(
+        List<Path> files,
+        Path segmentDir,
+        Path output
+    ) throws Exception {
+        Path list = segmentDir.resolve("segments.txt");
+        List<String> lines = new ArrayList<>();
+        for (Path file : files) {
+            lines.add(
+                "file '" +
+                    file.toAbsolutePath().toString().replace("'", "'\\''") +
+                    "'"
             );
+        }
+        Files.write(list, lines, StandardCharsets.UTF_8);
+
+        FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(list.toString());
+        grabber.setFormat("concat");
+        grabber.setOption("safe", "0");
+        FFmpegFrameRecorder recorder = null;
+        Exception error = null;
+        try {
+            grabber.start();
+            recorder =
+                output != null
+                    ? new FFmpegFrameRecorder(
+                        output.toString(),
+                        grabber.getImageWidth(),
+                        grabber.getImageHeight()
+                    )
+                    : new FFmpegFrameRecorder(
+                        standardOutput(),
+                        grabber.getImageWidth(),
+                        grabber.getImageHeight()
+                    );
+            recorder.setFormat(profile.format());
+            recorder.setVideoCodec(grabber.getVideoCodec());
+            recorder.setFrameRate(grabber.getFrameRate());
+            profile.applyContainerOptions(recorder, isFragmented());
+            recorder.start(grabber.getFormatContext());
+
+            AVPacket packet;
+            while ((packet = grabber.grabPacket()) != null) {
+                recorder.recordPacket(packet);
+            }
+        } catch (Exception ex) {
+            error = ex;
+        } finally {
+            error = closeRecorder(recorder, error);
+            try {
+                grabber.stop();
+                grabber.release();
+            } catch (Exception grabberEx) {
+                if (error != null) {
+                    error.addSuppressed(grabberEx);
+                } else {
+                    error = grabberEx;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+        App.logInfo(
+            "Joined " + files.size() + " segment(s) without re-encoding."
+        );
+    }
+
+    private Exception closeRecorder(
+        FFmpegFrameRecorder recorder,
+        Exception encodeError
+    ) {
+        if (recorder == null) {
+            return encodeError;
+        }
+        try {
+            recorder.stop();
+        } catch (Exception stopEx) {
+            if (encodeError != null) {
+                encodeError.addSuppressed(stopEx);
+            } else {
+                encodeError = stopEx;
+            }
+        }
+        try {
+            recorder.release();
+        } catch (Exception releaseEx) {
+            if (encodeError != null) {
+                encodeError.addSuppressed(releaseEx);
+            } else {
+                encodeError = releaseEx;
+            }
+        }
+        return encodeError;
+    }
+
+    private void enqueueTranscode() {
+        Path queueDir = arguments.transcodeQueue();
+        if (queueDir == null) {
+            App.logInfo(
+                "Lossless intermediate kept; no --transcode-queue given, so no delivery encode was scheduled."
+            );
+            return;
+        }
+        try {
+            Path job = TranscodeQueue.open(queueDir).enqueue(
+                videoTarget,
+                arguments.videoOutput(),
+                arguments.encoderProfile(),
+                arguments.fragmentedMp4(),
+                true
+            );
+            App.logInfo(
+                "Queued '" +
+                    arguments.encoderProfile().id() +
+                    "' transcode to " +
+                    arguments.videoOutput() +
+                    " as " +
+                    job.getFileName()
+            );
+        } catch (IOException ex) {
             throw new IllegalStateException(
-                "Failed to encode video",
-                encodeError
+                "Unable to queue transcode in " + queueDir,
+                ex
             );
         }
+    }
 
-        App.logInfo("Video preview written to " + arguments.videoOutput());
+    private String destination() {
+        return videoTarget != null ? videoTarget.toString() : "standard output";
+    }
 
-        if (!arguments.keepFrames()) {
-            deleteFrames(framesDir);
+    private boolean isFragmented() {
+        return videoTarget == null || arguments.fragmentedMp4();
+    }
+
+    // System.out carries log output while streaming (see App.main), so the
+    // video goes straight to the process's stdout descriptor.
+    private static OutputStream standardOutput() {
+        return new BufferedOutputStream(
+            new FileOutputStream(FileDescriptor.out),
+            STREAM_BUFFER_SIZE
+        );
+    }
+
+    private static Path intermediatePath(Path output, EncoderProfile profile) {
+        String fileName = output.getFileName().toString();
+        int lastDot = fileName.lastIndexOf('.');
+        String stem = lastDot >= 0 ? fileName.substring(0, lastDot) : fileName;
+        return output.resolveSibling(
+            stem + ".intermediate." + profile.extension()
+        );
+    }
+
+    private void configureCaptureLayout() {
+        boolean y4m = arguments.rawFormat() == App.CliArguments.RawFormat.Y4M;
+        if (!arguments.gpuYuv()) {
+            if (y4m) {
+                useCpuYuv();
+            }
+            return;
+        }
+        if (arguments.animationFormat() != null) {
+            App.logInfo("Animated image output needs RGBA frames; --gpu-yuv is ignored.");
+            return;
+        }
+        if (arguments.rawFormat() == App.CliArguments.RawFormat.RGBA) {
+            App.logInfo("Raw RGBA output streams the captured frames; --gpu-yuv is ignored.");
+            return;
+        }
+        if (arguments.keepFrames() || arguments.spoolPath() != null) {
+            App.logInfo("Kept frames need RGBA readback; YUV conversion moves to the CPU.");
+            useCpuYuv();
+            return;
+        }
+        if (!frameRenderer.supportsCaptureLayout(CapturedFrame.Layout.YUV420P)) {
+            App.logWarn(
+                String.format(
+                    Locale.ROOT,
+                    "GPU YUV conversion needs the GL renderer and a width divisible by 8 and height by 4 (got %dx%d).",
+                    frameRenderer.getOutputWidth(),
+                    frameRenderer.getOutputHeight()
+                )
+            );
+            useCpuYuv();
+            return;
+        }
+        frameRenderer.setCaptureLayout(CapturedFrame.Layout.YUV420P);
+        App.logInfo("Converting frames to YUV420P on the GPU before readback.");
+    }
+
+    private void useCpuYuv() {
+        PixelKernels kernels = PixelKernels.select(arguments.pixelKernels());
+        int width = frameRenderer.getOutputWidth();
+        int height = frameRenderer.getOutputHeight();
+        cpuYuvConverter = ThreadLocal.withInitial(() ->
+            new CpuYuvConverter(kernels, width, height)
+        );
+        App.logInfo(
+            "Converting frames to YUV420P on the CPU with " +
+                kernels.name() +
+                " kernels."
+        );
+    }
+
+    private FramePipeline startPipeline(
+        FramePipeline.Sink sink,
+        Path framesDir,
+        int workers
+    ) {
+        if (workers == 0) {
+            App.logInfo("Converting and encoding frames on the render thread.");
+            return null;
         }
+        App.logInfo(
+            String.format(
+                Locale.ROOT,
+                "Frame pipeline: %d worker(s), up to %d frame(s) in flight.",
+                workers,
+                arguments.pipelineDepth()
+            )
+        );
+        return new FramePipeline(
+            workers,
+            arguments.pipelineDepth(),
+            (frame, index) -> processFrame(framesDir, frame, index),
+            sink
+        );
     }
 
     private float resolveRequestedSeconds(int fps) {
@@ -223,84 +744,161 @@ public final class VideoGenerator {
         return duration / timeScale;
     }
 
+    // A null output streams the video to standard output.
     private FFmpegFrameRecorder startRecorder(
         Path output,
         int width,
         int height,
-        int fps
+        int fps,
+        boolean segment
     ) throws Exception {
-        Path parent = output.getParent();
-        if (parent != null) {
-            Files.createDirectories(parent);
+        FFmpegFrameRecorder recorder;
+        if (output == null) {
+            recorder = profile.newRecorder(standardOutput(), width, height, fps);
+        } else {
+            Path parent = output.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            recorder = profile.newRecorder(
+                output,
+                width,
+                height,
+                fps,
+                segment,
+                arguments.fragmentedMp4()
+            );
+        }
+        if (!segment) {
+            App.logInfo(
+                "Video encoder profile '" +
+                    profile.id() +
+                    "' (" +
+                    profile.rateControl() +
+                    ("mp4".equals(profile.format()) && isFragmented()
+                        ? ", fragmented MP4"
+                        : "") +
+                    ")"
+            );
         }
-
-        FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(
-            output.toString(),
-            width,
-            height
-        );
-        long pixelsPerSecond = (long) width * height * Math.max(1, fps);
-        long targetBitrate = Math.max(2_000_000L, (pixelsPerSecond * 3L) / 4L);
-        if (targetBitrate > Integer.MAX_VALUE) {
-            targetBitrate = Integer.MAX_VALUE;
-        }
-        recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
-        recorder.setFormat("mp4");
-        recorder.setFrameRate(fps);
-        recorder.setPixelFormat(avutil.AV_PIX_FMT_YUV420P);
-        recorder.setVideoBitrate((int) targetBitrate);
-        recorder.setVideoOption("crf", "18");
-        recorder.setVideoOption("preset", "medium");
-        recorder.setVideoOption("profile", "high");
-        recorder.setVideoOption("tune", "animation");
-        recorder.setVideoOption("movflags", "+faststart");
-        App.logInfo(
-            "Video encoder configured at ~" + (targetBitrate / 1000) + " kbps"
-        );
         recorder.start();
         return recorder;
     }
 
-    private void recordFrame(FFmpegFrameRecorder recorder, Pixmap pixmap)
-        throws Exception {
-        recorder.record(frameConverter.convert(pixmapToBufferedImage(pixmap)));
+    // The render thread only draws and reads back; PNG writes and colour
+    // conversion run on pipeline workers, and a single encoder thread feeds
+    // the recorder in frame order.
+    private void writeFrame(
+        FramePipeline pipeline,
+        FramePipeline.Sink sink,
+        Path framesDir,
+        int index
+    ) throws Exception {
+        CapturedFrame frame = frameRenderer.takeFrame();
+        if (pipeline != null) {
+            pipeline.submit(frame, index);
+            return;
+        }
+        sink.accept(processFrame(framesDir, frame, index));
     }
 
-    private BufferedImage pixmapToBufferedImage(Pixmap pixmap) {
-        BufferedImage image = new BufferedImage(
-            pixmap.getWidth(),
-            pixmap.getHeight(),
-            BufferedImage.TYPE_3BYTE_BGR
-        );
-        byte[] bgr = ((DataBufferByte) image
-                .getRaster()
-                .getDataBuffer()).getData();
+    private CapturedFrame processFrame(
+        Path framesDir,
+        CapturedFrame frame,
+        int index
+    ) throws Exception {
+        try {
+            if (pngWriter != null) {
+                Path framePath = framesDir.resolve(
+                    String.format(Locale.ROOT, "frame_%05d.png", index)
+                );
+                pngWriter.write(frame, framePath);
+            }
+            if (sheetWriter != null) {
+                sheetWriter.write(frame, index);
+            }
+            if (spool != null) {
+                spool.write(frame, index);
+            }
+            if (cpuYuvConverter == null) {
+                return frame;
+            }
+            CapturedFrame planes = frameRenderer
+                .framePool()
+                .acquire(CapturedFrame.Layout.YUV420P);
+            try {
+                cpuYuvConverter.get().convert(frame, planes);
+            } catch (RuntimeException ex) {
+                planes.release();
+                throw ex;
+            }
+            frame.release();
+            return planes;
+        } catch (Exception ex) {
+            frame.release();
+            throw ex;
+        }
+    }
 
-        ByteBuffer pixels = pixmap.getPixels().duplicate();
-        pixels.rewind();
+    private void encodeFrame(FFmpegFrameRecorder recorder, CapturedFrame frame)
+        throws Exception {
+        try {
+            recordFrame(recorder, frame);
+        } finally {
+            frame.release();
+        }
+    }
 
-        int pixelCount = pixmap.getWidth() * pixmap.getHeight();
-        int dst = 0;
-        for (int i = 0; i < pixelCount; i++) {
-            byte r = pixels.get();
-            byte g = pixels.get();
-            byte b = pixels.get();
-            pixels.get(); // alpha, unused
+    private void encodeAnimationFrame(
+        AnimatedImageWriter writer,
+        CapturedFrame frame
+    ) throws Exception {
+        try {
+            writer.write(frame);
+        } finally {
+            frame.release();
+        }
+    }
 
-            bgr[dst++] = b;
-            bgr[dst++] = g;
-            bgr[dst++] = r;
+    private void encodeRawFrame(RawFrameWriter writer, CapturedFrame frame)
+        throws Exception {
+        try {
+            writer.write(frame);
+        } finally {
+            frame.release();
         }
+    }
 
-        return image;
+    private AnimatedImageWriter startAnimation(int fps) throws Exception {
+        App.logInfo(
+            "Writing animated " +
+                arguments.animationFormat().name() +
+                " frame by frame" +
+                (arguments.animationFormat() == App.CliArguments.AnimationFormat.GIF
+                    ? " with a per-frame octree palette."
+                    : ".")
+        );
+        return AnimatedImageWriter.open(
+            arguments,
+            videoTarget,
+            frameRenderer.getOutputWidth(),
+            frameRenderer.getOutputHeight(),
+            fps
+        );
     }
 
-    private void writePixmap(Path path, Pixmap pixmap) {
-        FileHandle handle = Gdx.files.absolute(path.toString());
-        if (handle.parent() != null && !handle.parent().exists()) {
-            handle.parent().mkdirs();
-        }
-        PixmapIO.writePNG(handle, pixmap);
+    private void recordFrame(FFmpegFrameRecorder recorder, CapturedFrame frame)
+        throws Exception {
+        boolean yuv = frame.layout() == CapturedFrame.Layout.YUV420P;
+        recorder.recordImage(
+            frame.width(),
+            frame.height(),
+            Frame.DEPTH_UBYTE,
+            yuv ? 1 : 4,
+            yuv ? frame.width() : frame.width() * 4,
+            yuv ? avutil.AV_PIX_FMT_YUV420P : avutil.AV_PIX_FMT_RGBA,
+            frame.pixels()
+        );
     }
 
     private void deleteFrames(Path framesDir) {
@@ -328,4 +926,32 @@ public final class VideoGenerator {
             );
         }
     }
+
+    private static final class Segment {
+
+        private final SkeletonInstance instance;
+        private final int first;
+        private final int length;
+        private final Path file;
+        private FFmpegFrameRecorder recorder;
+        private FramePipeline pipeline;
+        private int submitted;
+        private int taken;
+
+        private Segment(
+            SkeletonInstance instance,
+            int first,
+            int length,
+            Path file
+        ) {
+            this.instance = instance;
+            this.first = first;
+            this.length = length;
+            this.file = file;
+        }
+
+        private void accept(CapturedFrame frame) throws Exception {
+            pipeline.submit(frame, first + taken++);
+        }
+    }
 }
@@ -0,0 +1,38 @@
+package com.github.oscarne.createpreview;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import java.nio.ByteBuffer;
+
+/**
+ * A rendered frame borrowed from its renderer's pool. Call {@link #release()}
+ * once the pixels have been read so the buffer can be reused.
+ */
+public interface CapturedFrame {
+
+    enum Layout {
+        RGBA,
+        YUV420P,
+    }
+
+    Layout layout();
+
+    /**
+     * @throws IllegalStateException if the frame holds YUV planes
+     */
+    Pixmap pixmap();
+
+    ByteBuffer pixels();
+
+    int width();
+
+    int height();
+
+    /**
+     * Adds a holder so the frame stays out of the pool until every holder has
+     * called {@link #release()}. Used when a frame is written and encoded
+     * concurrently.
+     */
+    CapturedFrame retain();
+
+    void release();
+}
@@ -0,0 +1,38 @@
+package com.github.oscarne.createpreview;
+
+/**
+ * Renderer side of {@link PreviewRenderer}, found through
+ * {@link java.util.ServiceLoader}. Every method is called on the handle's
+ * render thread. This is the seam between the API and the tool's internals,
+ * not something embedders implement.
+ */
+public interface PreviewEngine {
+
+    int width();
+
+    int height();
+
+    int fps();
+
+    /** Frames in one pass over the requested duration or loop. */
+    int frameCount();
+
+    /** Starts an independent pass over the timeline at its first frame. */
+    Timeline timeline();
+
+    void dispose();
+
+    interface Timeline {
+        /** Renders the next frame of the pass. */
+        CapturedFrame next();
+    }
+
+    interface Provider {
+        /**
+         * Parses command-line style options and loads the skeleton.
+         *
+         * @throws IllegalArgumentException if the options are invalid
+         */
+        PreviewEngine open(String... args);
+    }
+}
@@ -0,0 +1,310 @@
+package com.github.oscarne.createpreview;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Embeddable entry point: loads a skeleton once and streams its frames to
+ * in-process consumers, without the command line or a window.
+ *
+ * <p>Options are the command-line ones (assets, skin, animation, duration or
+ * loop mode, fps, size). Frames are drawn by the software renderer on one
+ * render thread per handle, and only as far as subscribers have requested,
+ * so a slow consumer is never outpaced. Frames are RGBA and come from a
+ * pool: call {@link CapturedFrame#release()} once a frame has been read so
+ * its buffer is reused for a later frame.
+ *
+ * <p>{@link #close()} waits for open subscriptions to complete or cancel,
+ * so a handle can be scoped with try-with-resources:
+ *
+ * <pre>
+ * try (PreviewRenderer preview = PreviewRenderer.open("--folder", dir, "--video-seconds", "2")) {
+ *     preview.frames().subscribe(uploader);
+ * } // returns once uploader has had onComplete or onError, or cancelled
+ * </pre>
+ */
+public final class PreviewRenderer implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final Logger LOG = Logger.getLogger(PreviewRenderer.class.getName());
+
+    private final PreviewEngine engine;
+    private final ExecutorService renderThread;
+    private final Set<FrameSubscription> subscriptions =
+        ConcurrentHashMap.newKeySet();
+    private final int width;
+    private final int height;
+    private final int fps;
+    private final int frameCount;
+    private volatile Thread renderer;
+    private volatile boolean closed;
+
+    private PreviewRenderer(PreviewEngine.Provider provider, String[] args) {
+        this.renderThread = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(
+                runnable,
+                "preview-render-" + THREAD_COUNTER.incrementAndGet()
+            );
+            thread.setDaemon(true);
+            renderer = thread;
+            return thread;
+        });
+        Future<PreviewEngine> loaded = renderThread.submit(() -> provider.open(args));
+        try {
+            this.engine = loaded.get();
+        } catch (ExecutionException ex) {
+            renderThread.shutdown();
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Unable to load skeleton.", cause);
+        } catch (InterruptedException ex) {
+            renderThread.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading skeleton.", ex);
+        }
+        this.width = engine.width();
+        this.height = engine.height();
+        this.fps = engine.fps();
+        this.frameCount = engine.frameCount();
+    }
+
+    /**
+     * Parses command-line style options and loads the skeleton. The GL
+     * renderer needs a window, so {@code --renderer gl} is replaced with the
+     * software renderer. A headless libGDX backend is started if the process
+     * has none.
+     *
+     * @throws IllegalArgumentException if the options are invalid
+     */
+    public static PreviewRenderer open(String... args) {
+        Iterator<PreviewEngine.Provider> providers = ServiceLoader
+            .load(PreviewEngine.Provider.class, PreviewRenderer.class.getClassLoader())
+            .iterator();
+        if (!providers.hasNext()) {
+            throw new IllegalStateException(
+                "No preview engine on the classpath; add the create-preview JAR."
+            );
+        }
+        return new PreviewRenderer(providers.next(), args.clone());
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int fps() {
+        return fps;
+    }
+
+    /** Frames in one pass over the requested duration or loop. */
+    public int frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Publishes the timeline from its first frame for every subscriber.
+     * Signals arrive on the render thread; subscribers sharing a handle take
+     * turns on it frame by frame.
+     */
+    public Flow.Publisher<CapturedFrame> frames() {
+        return subscriber -> {
+            Objects.requireNonNull(subscriber, "subscriber");
+            FrameSubscription subscription = new FrameSubscription(subscriber);
+            subscriptions.add(subscription);
+            subscriber.onSubscribe(subscription);
+            if (closed) {
+                subscription.fail(new IllegalStateException("Preview renderer is closed."));
+            }
+        };
+    }
+
+    /**
+     * Waits for open subscriptions to complete or cancel, then frees the
+     * renderer. If the wait is interrupted, or {@code close} is called from a
+     * subscriber signal on the render thread, open subscriptions are failed
+     * instead. Frames still held by subscribers are freed when released.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != renderer) {
+            awaitSubscriptions();
+        }
+        closed = true;
+        for (FrameSubscription subscription : subscriptions) {
+            subscription.fail(new IllegalStateException("Preview renderer is closed."));
+        }
+        try {
+            renderThread.execute(engine::dispose);
+        } catch (RejectedExecutionException ignored) {
+            // Already shut down.
+        }
+        renderThread.shutdown();
+        if (Thread.currentThread() == renderer) {
+            return;
+        }
+        try {
+            if (!renderThread.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warning("Preview render thread did not stop within 30s.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitSubscriptions() {
+        synchronized (subscriptions) {
+            try {
+                while (!subscriptions.isEmpty()) {
+                    subscriptions.wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void removeSubscription(FrameSubscription subscription) {
+        synchronized (subscriptions) {
+            subscriptions.remove(subscription);
+            subscriptions.notifyAll();
+        }
+    }
+
+    /**
+     * Demand-driven pass over the timeline with its own skeleton. Every
+     * signal is sent from the render thread by {@link #drain()}; requests
+     * only add demand and schedule a drain.
+     */
+    private final class FrameSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super CapturedFrame> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger drains = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable failure;
+        // Render thread only.
+        private PreviewEngine.Timeline timeline;
+        private int next;
+        private boolean done;
+
+        private FrameSubscription(Flow.Subscriber<? super CapturedFrame> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Requested demand must be positive, got " + n + "."));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            removeSubscription(this);
+        }
+
+        void fail(Throwable error) {
+            if (failure == null) {
+                failure = error;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            try {
+                renderThread.execute(this::drain);
+            } catch (RejectedExecutionException ex) {
+                // The handle is closed and no drain is running, so the
+                // terminal signal can be sent from here.
+                if (!done && !cancelled) {
+                    finish(new IllegalStateException("Preview renderer is closed."));
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                emit();
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (!done && !cancelled) {
+                if (failure != null) {
+                    finish(failure);
+                    return;
+                }
+                if (next == frameCount) {
+                    finish(null);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                CapturedFrame frame;
+                try {
+                    frame = render();
+                } catch (RuntimeException ex) {
+                    finish(ex);
+                    return;
+                }
+                demand.decrementAndGet();
+                subscriber.onNext(frame);
+            }
+        }
+
+        private CapturedFrame render() {
+            if (timeline == null) {
+                timeline = engine.timeline();
+            }
+            next++;
+            return timeline.next();
+        }
+
+        // The subscription leaves the set only after the terminal signal, so
+        // close() does not free the renderer under a running onComplete.
+        private void finish(Throwable error) {
+            done = true;
+            try {
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+            } finally {
+                removeSubscription(this);
+            }
+        }
+    }
+}
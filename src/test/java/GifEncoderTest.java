@@ -0,0 +1,186 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import org.junit.jupiter.api.Test;
+
+class GifEncoderTest {
+
+    @Test
+    void framesWithFewColorsRoundTripExactly() throws IOException {
+        int width = 48;
+        int height = 32;
+        List<ByteBuffer> frames = new ArrayList<>();
+        for (int colors : new int[] { 1, 2, 17, 255 }) {
+            frames.add(frame(width, height, palette(colors, colors), 0, colors));
+        }
+        List<BufferedImage> decoded = roundTrip(width, height, frames);
+        assertEquals(frames.size(), decoded.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertExact(frames.get(i), decoded.get(i), "frame " + i);
+        }
+    }
+
+    @Test
+    void translucentPixelsMapToTheTransparentIndex() throws IOException {
+        int width = 40;
+        int height = 40;
+        ByteBuffer rgba = frame(width, height, palette(255, 9), 3, 255);
+        // Alpha 0..255 across rows: below 128 must become transparent.
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rgba.put((y * width + x) * 4 + 3, (byte) ((x * 255) / (width - 1)));
+            }
+        }
+        BufferedImage image = roundTrip(width, height, List.of(rgba)).get(0);
+        IndexColorModel model = (IndexColorModel) image.getColorModel();
+        int transparent = model.getTransparentPixel();
+        assertTrue(transparent >= 0, "frame declares no transparent index");
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int alpha = rgba.get((y * width + x) * 4 + 3) & 0xff;
+                int index = image.getRaster().getSample(x, y, 0);
+                if (alpha < 128) {
+                    assertEquals(transparent, index, "pixel " + x + "," + y);
+                } else {
+                    assertTrue(index != transparent, "opaque pixel " + x + "," + y);
+                    assertEquals(
+                        opaque(rgba, y * width + x),
+                        image.getRGB(x, y),
+                        "pixel " + x + "," + y
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void noisyFrameOverflowingTheCodeTableRoundTrips() throws IOException {
+        // Random indices barely repeat, so a 256x256 frame emits far more
+        // than 4096 codes and the encoder has to send clear codes.
+        int width = 256;
+        int height = 256;
+        ByteBuffer rgba = frame(width, height, palette(200, 5), 11, 200);
+        List<BufferedImage> decoded = roundTrip(width, height, List.of(rgba, rgba));
+        assertExact(rgba, decoded.get(0), "first frame");
+        assertExact(rgba, decoded.get(1), "second frame");
+    }
+
+    @Test
+    void framesWithManyColorsStayWithinTheirPalette() throws IOException {
+        int width = 128;
+        int height = 128;
+        ByteBuffer rgba = ByteBuffer.allocateDirect(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                rgba.put((byte) (x * 2));
+                rgba.put((byte) (y * 2));
+                rgba.put((byte) ((x ^ y) * 2));
+                rgba.put((byte) 255);
+            }
+        }
+        rgba.flip();
+
+        OctreeQuantizer quantizer = new OctreeQuantizer(255);
+        byte[] indices = new byte[width * height];
+        quantizer.quantize(rgba, width, height, indices);
+        assertTrue(quantizer.colors() <= 255, quantizer.colors() + " colours");
+        for (byte index : indices) {
+            assertTrue((index & 0xff) < quantizer.colors(), "index " + (index & 0xff));
+        }
+
+        BufferedImage image = roundTrip(width, height, List.of(rgba)).get(0);
+        long error = 0;
+        for (int i = 0; i < width * height; i++) {
+            int expected = opaque(rgba, i);
+            int actual = image.getRGB(i % width, i / width);
+            assertEquals(0xff, actual >>> 24, "pixel " + i + " alpha");
+            for (int shift = 0; shift < 24; shift += 8) {
+                error += Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff));
+            }
+        }
+        double meanError = error / (width * height * 3.0);
+        assertTrue(meanError < 8, "mean channel error " + meanError);
+    }
+
+    private static List<BufferedImage> roundTrip(int width, int height, List<ByteBuffer> frames)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GifEncoder encoder = new GifEncoder(out, width, height, 30);
+        for (ByteBuffer frame : frames) {
+            encoder.writeFrame(frame);
+        }
+        encoder.finish();
+        assertEquals(frames.size(), encoder.frames());
+
+        List<BufferedImage> images = new ArrayList<>();
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (
+            ImageInputStream in = ImageIO.createImageInputStream(
+                new ByteArrayInputStream(out.toByteArray())
+            )
+        ) {
+            reader.setInput(in);
+            int count = reader.getNumImages(true);
+            for (int i = 0; i < count; i++) {
+                images.add(reader.read(i));
+            }
+        } finally {
+            reader.dispose();
+        }
+        return images;
+    }
+
+    private static int[] palette(int colors, long seed) {
+        Random random = new Random(seed);
+        List<Integer> unique = new ArrayList<>();
+        while (unique.size() < colors) {
+            int rgb = random.nextInt(1 << 24);
+            if (!unique.contains(rgb)) {
+                unique.add(rgb);
+            }
+        }
+        return unique.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Pixels drawn from the palette; every colour appears at least once.
+    private static ByteBuffer frame(int width, int height, int[] palette, long seed, int used) {
+        Random random = new Random(seed);
+        ByteBuffer rgba = ByteBuffer.allocateDirect(width * height * 4);
+        for (int i = 0; i < width * height; i++) {
+            int rgb = palette[i < used ? i % used : random.nextInt(used)];
+            rgba.put((byte) (rgb >> 16));
+            rgba.put((byte) (rgb >> 8));
+            rgba.put((byte) rgb);
+            rgba.put((byte) 255);
+        }
+        rgba.flip();
+        return rgba;
+    }
+
+    private static int opaque(ByteBuffer rgba, int pixel) {
+        int offset = pixel * 4;
+        return 0xff000000 |
+            ((rgba.get(offset) & 0xff) << 16) |
+            ((rgba.get(offset + 1) & 0xff) << 8) |
+            (rgba.get(offset + 2) & 0xff);
+    }
+
+    private static void assertExact(ByteBuffer rgba, BufferedImage image, String label) {
+        int width = image.getWidth();
+        for (int i = 0; i < width * image.getHeight(); i++) {
+            assertEquals(opaque(rgba, i), image.getRGB(i % width, i / width), label + " pixel " + i);
+        }
+    }
+}
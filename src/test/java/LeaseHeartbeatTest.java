@@ -0,0 +1,77 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LeaseHeartbeatTest {
+
+    private static final long LEASE_MILLIS = 60_000;
+
+    @TempDir
+    Path temp;
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private LeaseHeartbeat leases;
+    private Path file;
+
+    @BeforeEach
+    void open() throws IOException {
+        leases = new LeaseHeartbeat("test-heartbeat", LEASE_MILLIS, clock::get);
+        file = Files.createFile(temp.resolve("job.lease"));
+    }
+
+    @AfterEach
+    void close() {
+        leases.close();
+    }
+
+    @Test
+    void fileGoesStaleOnlyAfterAWholeLease() throws IOException {
+        leases.hold(file);
+        clock.addAndGet(LEASE_MILLIS);
+        assertFalse(leases.isStale(file));
+        clock.addAndGet(1);
+        assertTrue(leases.isStale(file));
+    }
+
+    @Test
+    void renewKeepsHeldFilesFresh() throws IOException {
+        leases.hold(file);
+        clock.addAndGet(LEASE_MILLIS + 1);
+        leases.renew();
+        assertFalse(leases.isStale(file));
+    }
+
+    @Test
+    void releasedFileIsNotRenewed() throws IOException {
+        leases.hold(file);
+        leases.release(file);
+        clock.addAndGet(LEASE_MILLIS + 1);
+        leases.renew();
+        assertTrue(leases.isStale(file));
+        assertEquals(Collections.emptyList(), leases.held());
+    }
+
+    @Test
+    void missingFileIsStale() throws IOException {
+        assertTrue(leases.isStale(temp.resolve("never-created.lease")));
+    }
+
+    @Test
+    void renewDropsAFileTakenAwayByAnotherProcess() throws IOException {
+        leases.hold(file);
+        Files.delete(file);
+        leases.renew();
+        assertEquals(Collections.emptyList(), leases.held());
+        assertFalse(Files.exists(file), "renewing must not recreate the file");
+    }
+}
@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The vector kernels must match the scalar ones byte for byte. Lengths cover
+ * every remainder modulo the vector width plus a few long rows, and
+ * destinations are sized tightly so the scalar tail has to take over.
+ */
+class PixelKernelsTest {
+
+    private static final int[] OFFSETS = { 0, 3 };
+
+    private final PixelKernels scalar = ScalarPixelKernels.INSTANCE;
+    private final PixelKernels vector = loadVector();
+
+    @Test
+    void lumaMatchesScalar() {
+        Random random = new Random(1);
+        for (int pixels : lengths()) {
+            for (int srcPixel : OFFSETS) {
+                for (int dstOffset : OFFSETS) {
+                    byte[] src = new byte[(srcPixel + pixels) * 4];
+                    random.nextBytes(src);
+                    byte[] expected = filled(dstOffset + pixels, random.nextLong());
+                    byte[] actual = expected.clone();
+                    scalar.rgbaToLuma(src, srcPixel * 4, expected, dstOffset, pixels);
+                    vector.rgbaToLuma(src, srcPixel * 4, actual, dstOffset, pixels);
+                    assertArrayEquals(expected, actual, "luma of " + pixels + " pixel(s)");
+                }
+            }
+        }
+    }
+
+    @Test
+    void chromaMatchesScalar() {
+        Random random = new Random(2);
+        for (int pixels : lengths()) {
+            for (int srcPixel : OFFSETS) {
+                for (int dstOffset : OFFSETS) {
+                    for (int slack : new int[] { 0, 64 }) {
+                        byte[] row0 = new byte[(srcPixel + pixels) * 4];
+                        byte[] row1 = new byte[row0.length];
+                        random.nextBytes(row0);
+                        random.nextBytes(row1);
+                        int size = dstOffset + pixels / 2 + slack;
+                        byte[] expectedU = filled(size, random.nextLong());
+                        byte[] expectedV = filled(size, random.nextLong());
+                        byte[] actualU = expectedU.clone();
+                        byte[] actualV = expectedV.clone();
+                        scalar.rgbaToChroma(
+                            row0, row1, srcPixel * 4, expectedU, expectedV, dstOffset, pixels
+                        );
+                        vector.rgbaToChroma(
+                            row0, row1, srcPixel * 4, actualU, actualV, dstOffset, pixels
+                        );
+                        String label = "chroma of " + pixels + " pixel(s), slack " + slack;
+                        assertArrayEquals(expectedU, actualU, label + " (u)");
+                        assertArrayEquals(expectedV, actualV, label + " (v)");
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void extremeColoursMatchScalar() {
+        int pixels = 67;
+        for (int value : new int[] { 0, 1, 127, 128, 254, 255 }) {
+            byte[] src = new byte[pixels * 4];
+            Arrays.fill(src, (byte) value);
+            byte[] expected = new byte[pixels];
+            byte[] actual = new byte[pixels];
+            scalar.rgbaToLuma(src, 0, expected, 0, pixels);
+            vector.rgbaToLuma(src, 0, actual, 0, pixels);
+            assertArrayEquals(expected, actual, "luma of " + value);
+
+            byte[] expectedU = new byte[pixels / 2];
+            byte[] expectedV = new byte[pixels / 2];
+            byte[] actualU = new byte[pixels / 2];
+            byte[] actualV = new byte[pixels / 2];
+            scalar.rgbaToChroma(src, src, 0, expectedU, expectedV, 0, pixels);
+            vector.rgbaToChroma(src, src, 0, actualU, actualV, 0, pixels);
+            assertArrayEquals(expectedU, actualU, "u of " + value);
+            assertArrayEquals(expectedV, actualV, "v of " + value);
+        }
+    }
+
+    // The test task runs with jdk.incubator.vector, so a missing vector
+    // implementation is a failure rather than a skip.
+    private static PixelKernels loadVector() {
+        PixelKernels vector = PixelKernels.loadVector();
+        assertNotNull(vector, "vector kernels did not load");
+        return vector;
+    }
+
+    private static int[] lengths() {
+        int[] lengths = new int[80];
+        for (int i = 0; i < 76; i++) {
+            lengths[i] = i;
+        }
+        lengths[76] = 1000;
+        lengths[77] = 1023;
+        lengths[78] = 4096;
+        lengths[79] = 4099;
+        return lengths;
+    }
+
+    private static byte[] filled(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,147 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Adler32;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class PngEncoderTest {
+
+    // {width, height}: one row, one column, exact and partial row blocks.
+    // A 64 px row is 257 filtered bytes, so blocks hold 1020 rows; a 1000 px
+    // row is 4001 bytes, so blocks hold 65 rows.
+    private static final int[][] SIZES = {
+        { 1, 1 },
+        { 37, 1 },
+        { 1, 300 },
+        { 64, 1020 },
+        { 64, 2500 },
+        { 1000, 65 },
+        { 1000, 131 },
+    };
+
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void startExecutor() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterAll
+    static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void serialOutputDecodesToTheSourcePixels() throws IOException {
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            for (int[] size : SIZES) {
+                ByteBuffer rgba = image(size[0], size[1], 1);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new PngEncoder(6, filter).write(out, rgba, size[0], size[1]);
+                assertPixels(rgba, size[0], size[1], out.toByteArray(), filter + " serial");
+            }
+        }
+    }
+
+    @Test
+    void parallelOutputDecodesToTheSourcePixels() throws IOException {
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            for (int[] size : SIZES) {
+                ByteBuffer rgba = image(size[0], size[1], 2);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new PngEncoder(6, filter).writeParallel(out, rgba, size[0], size[1], executor);
+                assertPixels(rgba, size[0], size[1], out.toByteArray(), filter + " parallel");
+            }
+        }
+    }
+
+    @Test
+    void parallelOutputDecodesAtEveryLevel() throws IOException {
+        for (int level = 0; level <= 9; level++) {
+            ByteBuffer rgba = image(1000, 131, 3);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new PngEncoder(level, PngEncoder.Filter.PAETH)
+                .writeParallel(out, rgba, 1000, 131, executor);
+            assertPixels(rgba, 1000, 131, out.toByteArray(), "level " + level);
+        }
+    }
+
+    @Test
+    void combineAdlerMatchesTheChecksumOfTheConcatenation() {
+        Random random = new Random(4);
+        for (int i = 0; i < 200; i++) {
+            byte[] a = new byte[random.nextInt(100_000)];
+            byte[] b = new byte[random.nextInt(100_000)];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            Adler32 whole = new Adler32();
+            whole.update(a);
+            whole.update(b);
+            assertEquals(
+                whole.getValue(),
+                PngEncoder.combineAdler(adler(a), adler(b), b.length),
+                "lengths " + a.length + " + " + b.length
+            );
+        }
+    }
+
+    private static long adler(byte[] data) {
+        Adler32 adler = new Adler32();
+        adler.update(data);
+        return adler.getValue();
+    }
+
+    // Smooth gradients with noise and translucent patches, so every filter
+    // type is picked by the adaptive filter somewhere.
+    private static ByteBuffer image(int width, int height, long seed) {
+        Random random = new Random(seed);
+        ByteBuffer rgba = ByteBuffer.allocateDirect(width * height * 4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                boolean noisy = ((x / 16) + (y / 16)) % 3 == 0;
+                rgba.put((byte) (x * 255 / Math.max(1, width - 1)));
+                rgba.put((byte) (y * 255 / Math.max(1, height - 1)));
+                rgba.put((byte) (noisy ? random.nextInt(256) : (x + y) & 0xff));
+                rgba.put((byte) (noisy ? random.nextInt(256) : 255));
+            }
+        }
+        rgba.flip();
+        return rgba;
+    }
+
+    private static void assertPixels(
+        ByteBuffer rgba,
+        int width,
+        int height,
+        byte[] png,
+        String label
+    ) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png));
+        assertNotNull(decoded, label + ": not a decodable PNG");
+        assertEquals(width, decoded.getWidth(), label + " width");
+        assertEquals(height, decoded.getHeight(), label + " height");
+        int[] expected = new int[width * height];
+        ByteBuffer source = rgba.duplicate();
+        for (int i = 0; i < expected.length; i++) {
+            int r = source.get() & 0xff;
+            int g = source.get() & 0xff;
+            int b = source.get() & 0xff;
+            int a = source.get() & 0xff;
+            expected[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+        int[] actual = decoded.getRGB(0, 0, width, height, null, 0, width);
+        assertArrayEquals(expected, actual, label + " " + width + "x" + height);
+    }
+}
@@ -0,0 +1,172 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardLeasesTest {
+
+    private static final long LEASE_MILLIS = 60_000;
+
+    @TempDir
+    Path temp;
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private Path claims;
+    private Path folder;
+    private ShardLeases first;
+    private ShardLeases second;
+
+    @BeforeEach
+    void open() throws IOException {
+        claims = temp.resolve("claims");
+        folder = Files.createDirectories(temp.resolve("library").resolve("mod-a"));
+        first = process();
+        second = process();
+    }
+
+    @AfterEach
+    void close() {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void liveLeaseKeepsOtherClaimersOut() throws IOException {
+        assertNotNull(first.tryClaim(folder));
+        assertNull(second.tryClaim(folder));
+        assertNull(first.tryClaim(folder));
+        assertEquals(1, files(".lease").size());
+    }
+
+    @Test
+    void staleLeaseIsTakenOverByTheNextGeneration() throws IOException {
+        assertNotNull(first.tryClaim(folder));
+        expireLeases();
+
+        ShardLeases.Lease takeover = second.tryClaim(folder);
+        assertNotNull(takeover);
+        assertEquals(2, files(".lease").size());
+        assertNull(first.tryClaim(folder), "the new generation is live");
+
+        takeover.complete();
+        assertTrue(files(".lease").isEmpty());
+        assertTrue(second.isFinished(folder));
+    }
+
+    @Test
+    void oldHolderFinishingLeavesTheTakeoverLeaseAlone() throws IOException {
+        ShardLeases.Lease original = first.tryClaim(folder);
+        expireLeases();
+        ShardLeases.Lease takeover = second.tryClaim(folder);
+        assertNotNull(takeover);
+
+        original.fail("slow, not dead");
+        List<Path> leases = files(".lease");
+        assertEquals(1, leases.size());
+        assertTrue(leases.get(0).getFileName().toString().endsWith(".1.lease"));
+        assertNull(first.tryClaim(folder), "the takeover still holds the folder");
+
+        takeover.complete();
+        assertTrue(files(".lease").isEmpty());
+        assertTrue(files(".failed").isEmpty());
+    }
+
+    @Test
+    void claimAfterFinishFindsTheFolderDone() throws IOException {
+        ShardLeases.Lease lease = first.tryClaim(folder);
+        lease.complete();
+
+        assertNull(second.tryClaim(folder));
+        assertTrue(files(".lease").isEmpty(), "a claim on a done folder leaves no lease");
+        assertEquals(1, files(".done").size());
+    }
+
+    @Test
+    void generationGapDoesNotHideTheLiveLease() throws IOException {
+        first.tryClaim(folder);
+        expireLeases();
+        assertNotNull(second.tryClaim(folder));
+        // Generation 0 disappears while generation 1 is live, as when the
+        // original holder cleans up after being taken over.
+        Files.delete(leaseNamed(".0.lease"));
+
+        ShardLeases third = process();
+        try {
+            assertNull(third.tryClaim(folder));
+            expireLeases();
+            assertNotNull(third.tryClaim(folder));
+            assertNotNull(leaseNamed(".2.lease"));
+        } finally {
+            third.close();
+        }
+    }
+
+    @Test
+    void failedFolderIsRetriedUntilTheAttemptLimit() throws IOException {
+        for (int attempt = 1; attempt <= ShardLeases.MAX_ATTEMPTS; attempt++) {
+            assertFalse(first.isFinished(folder));
+            ShardLeases.Lease lease = (attempt % 2 == 0 ? second : first).tryClaim(folder);
+            assertNotNull(lease, "attempt " + attempt);
+            lease.fail("attempt " + attempt);
+        }
+        assertTrue(first.isFinished(folder));
+        assertNull(second.tryClaim(folder));
+    }
+
+    @Test
+    void successAfterFailureClearsTheFailedMarker() throws IOException {
+        first.tryClaim(folder).fail("transient");
+        assertFalse(second.isFinished(folder));
+
+        second.tryClaim(folder).complete();
+        assertTrue(first.isFinished(folder));
+        assertTrue(files(".failed").isEmpty());
+    }
+
+    // A claimer in another process on the same clock; its heartbeat is not
+    // driven by the test, so its leases lapse when the clock moves on.
+    private ShardLeases process() throws IOException {
+        return ShardLeases.open(
+            claims,
+            new LeaseHeartbeat("shard-lease-test", LEASE_MILLIS, clock::get)
+        );
+    }
+
+    private void expireLeases() {
+        clock.addAndGet(LEASE_MILLIS + 1);
+    }
+
+    private Path leaseNamed(String suffix) throws IOException {
+        for (Path lease : files(".lease")) {
+            if (lease.getFileName().toString().endsWith(suffix)) {
+                return lease;
+            }
+        }
+        return null;
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(claims, "*" + suffix)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,196 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TranscodeQueueTest {
+
+    private static final long LEASE_MILLIS = 60_000;
+
+    @TempDir
+    Path root;
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final List<TranscodeQueue> workers = new ArrayList<>();
+
+    @AfterEach
+    void closeWorkers() {
+        for (TranscodeQueue worker : workers) {
+            worker.close();
+        }
+    }
+
+    @Test
+    void claimsTakeTheOldestJobAndNeverShareOne() throws IOException {
+        TranscodeQueue a = worker();
+        TranscodeQueue b = worker();
+        String oldest = enqueue(a, "a");
+        enqueue(a, "b");
+        enqueue(a, "c");
+
+        TranscodeQueue.Job claimed = a.claim();
+        assertEquals(oldest, claimed.id());
+        Set<String> ids = new HashSet<>();
+        ids.add(claimed.id());
+        assertTrue(ids.add(b.claim().id()));
+        assertTrue(ids.add(a.claim().id()));
+        assertNull(b.claim());
+        assertEquals(3, jobs("running").size());
+        assertTrue(jobs("pending").isEmpty());
+    }
+
+    @Test
+    void claimedJobKeepsItsSettings() throws IOException {
+        TranscodeQueue queue = worker();
+        enqueue(queue, "a");
+        TranscodeQueue.Job job = queue.claim();
+        assertEquals(root.resolve("a.mkv"), job.source());
+        assertEquals(root.resolve("a.mp4"), job.output());
+        assertEquals(EncoderProfile.DRAFT, job.profile());
+        assertTrue(job.fragmented());
+        assertFalse(job.deleteSource());
+        assertEquals("1", job.claim());
+    }
+
+    @Test
+    void liveClaimIsNotRecovered() throws IOException {
+        TranscodeQueue a = worker();
+        TranscodeQueue b = worker();
+        enqueue(a, "a");
+        assertNotNull(a.claim());
+        clock.addAndGet(LEASE_MILLIS);
+        assertNull(b.claim());
+    }
+
+    @Test
+    void expiredClaimIsRecoveredUnderTheNextClaimNumber() throws IOException {
+        TranscodeQueue a = worker();
+        TranscodeQueue b = worker();
+        String id = enqueue(a, "a");
+        assertNotNull(a.claim());
+        clock.addAndGet(LEASE_MILLIS + 1);
+
+        TranscodeQueue.Job recovered = b.claim();
+        assertEquals(id, recovered.id());
+        assertEquals("2", recovered.claim());
+        assertEquals(id + ".2.job", jobs("running").get(0).getFileName().toString());
+        assertTrue(b.complete(recovered));
+        assertEquals(id + ".job", jobs("done").get(0).getFileName().toString());
+    }
+
+    @Test
+    void stalledWorkerCannotFinishTheRecoveredJob() throws IOException {
+        TranscodeQueue a = worker();
+        TranscodeQueue b = worker();
+        enqueue(a, "a");
+        TranscodeQueue.Job stalled = a.claim();
+        clock.addAndGet(LEASE_MILLIS + 1);
+        TranscodeQueue.Job recovered = b.claim();
+
+        assertFalse(a.holds(stalled));
+        assertFalse(a.complete(stalled));
+        assertFalse(a.fail(stalled, new IllegalStateException("late")));
+        assertTrue(jobs("done").isEmpty());
+        assertTrue(jobs("failed").isEmpty());
+        assertTrue(b.holds(recovered));
+        assertTrue(b.complete(recovered));
+    }
+
+    @Test
+    void failedJobRecordsTheError() throws IOException {
+        TranscodeQueue queue = worker();
+        enqueue(queue, "a");
+        assertTrue(queue.fail(queue.claim(), new IllegalStateException("encoder exploded")));
+
+        List<Path> failed = jobs("failed");
+        assertEquals(1, failed.size());
+        String recorded = new String(Files.readAllBytes(failed.get(0)), StandardCharsets.UTF_8);
+        assertTrue(recorded.contains("encoder exploded"));
+        assertNull(queue.claim());
+    }
+
+    @Test
+    void releasedJobIsClaimableAgain() throws IOException {
+        TranscodeQueue a = worker();
+        TranscodeQueue b = worker();
+        String id = enqueue(a, "a");
+        a.claim();
+        a.releaseActive();
+
+        TranscodeQueue.Job job = b.claim();
+        assertEquals(id, job.id());
+        assertEquals("2", job.claim());
+    }
+
+    @Test
+    void jobCannotOverwriteItsSource() throws IOException {
+        TranscodeQueue queue = worker();
+        Path video = root.resolve("a.mkv");
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> queue.enqueue(video, video, EncoderProfile.DRAFT, false, true)
+        );
+        assertTrue(jobs("pending").isEmpty());
+    }
+
+    @Test
+    void enqueueOnlyQueueCannotClaim() throws IOException {
+        TranscodeQueue producer = TranscodeQueue.open(root);
+        workers.add(producer);
+        assertThrows(IllegalStateException.class, producer::claim);
+    }
+
+    private TranscodeQueue worker() throws IOException {
+        TranscodeQueue queue = TranscodeQueue.open(
+            root,
+            new LeaseHeartbeat("transcode-test", LEASE_MILLIS, clock::get)
+        );
+        workers.add(queue);
+        return queue;
+    }
+
+    // Job ids start with the enqueue time, so space them out to keep the
+    // claim order deterministic.
+    private String enqueue(TranscodeQueue queue, String name) throws IOException {
+        Path job = queue.enqueue(
+            root.resolve(name + ".mkv"),
+            root.resolve(name + ".mp4"),
+            EncoderProfile.DRAFT,
+            true,
+            false
+        );
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        String file = job.getFileName().toString();
+        return file.substring(0, file.indexOf('.'));
+    }
+
+    private List<Path> jobs(String state) throws IOException {
+        List<Path> jobs = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(root.resolve(state), "*.job")) {
+            for (Path job : stream) {
+                jobs.add(job);
+            }
+        }
+        return jobs;
+    }
+}
@@ -0,0 +1,137 @@
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Byte> PIXELS = ByteVector.SPECIES_256;
+    private static final VectorSpecies<Integer> LANES = IntVector.SPECIES_256;
+    private static final VectorSpecies<Byte> NARROW = ByteVector.SPECIES_64;
+    private static final int PIXELS_PER_VECTOR = PIXELS.length() / 4;
+
+    private static final VectorShuffle<Byte> RED = channel(0);
+    private static final VectorShuffle<Byte> GREEN = channel(1);
+    private static final VectorShuffle<Byte> BLUE = channel(2);
+    private static final VectorShuffle<Integer> NEIGHBOUR =
+        VectorShuffle.fromOp(LANES, lane -> lane ^ 1);
+    private static final VectorShuffle<Integer> EVEN_LANES =
+        VectorShuffle.fromOp(LANES, lane -> (lane * 2) % LANES.length());
+
+    private final ScalarPixelKernels scalar = ScalarPixelKernels.INSTANCE;
+
+    @Override
+    public String name() {
+        return "vector";
+    }
+
+    @Override
+    public void rgbaToLuma(
+        byte[] src,
+        int srcOffset,
+        byte[] dst,
+        int dstOffset,
+        int pixels
+    ) {
+        int i = 0;
+        for (; i + PIXELS_PER_VECTOR <= pixels; i += PIXELS_PER_VECTOR) {
+            ByteVector rgba = ByteVector.fromArray(PIXELS, src, srcOffset + i * 4);
+            IntVector r = widen(rgba, RED);
+            IntVector g = widen(rgba, GREEN);
+            IntVector b = widen(rgba, BLUE);
+            IntVector y = r.mul(66)
+                .add(g.mul(129))
+                .add(b.mul(25))
+                .add(128)
+                .lanewise(VectorOperators.ASHR, 8)
+                .add(16);
+            narrow(y).intoArray(dst, dstOffset + i);
+        }
+        scalar.rgbaToLuma(src, srcOffset + i * 4, dst, dstOffset + i, pixels - i);
+    }
+
+    @Override
+    public void rgbaToChroma(
+        byte[] row0,
+        byte[] row1,
+        int srcOffset,
+        byte[] u,
+        byte[] v,
+        int dstOffset,
+        int pixels
+    ) {
+        // Each vector covers PIXELS_PER_VECTOR source pixels and yields half as
+        // many chroma samples, but the narrowed store writes a full NARROW
+        // vector; keep going only while that store stays inside this call's
+        // samples, so nothing past them is touched.
+        int samples = pixels / 2;
+        int i = 0;
+        while (
+            i + PIXELS_PER_VECTOR <= pixels &&
+            i / 2 + NARROW.length() <= samples
+        ) {
+            int offset = srcOffset + i * 4;
+            ByteVector upper = ByteVector.fromArray(PIXELS, row0, offset);
+            ByteVector lower = ByteVector.fromArray(PIXELS, row1, offset);
+
+            IntVector r = average(upper, lower, RED);
+            IntVector g = average(upper, lower, GREEN);
+            IntVector b = average(upper, lower, BLUE);
+
+            IntVector cb = r.mul(-38)
+                .sub(g.mul(74))
+                .add(b.mul(112))
+                .add(128)
+                .lanewise(VectorOperators.ASHR, 8)
+                .add(128);
+            IntVector cr = r.mul(112)
+                .sub(g.mul(94))
+                .sub(b.mul(18))
+                .add(128)
+                .lanewise(VectorOperators.ASHR, 8)
+                .add(128);
+            int out = dstOffset + i / 2;
+            narrow(cb.rearrange(EVEN_LANES)).intoArray(u, out);
+            narrow(cr.rearrange(EVEN_LANES)).intoArray(v, out);
+            i += PIXELS_PER_VECTOR;
+        }
+        scalar.rgbaToChroma(
+            row0,
+            row1,
+            srcOffset + i * 4,
+            u,
+            v,
+            dstOffset + i / 2,
+            pixels - i
+        );
+    }
+
+    private static ByteVector narrow(IntVector values) {
+        return (ByteVector) values.castShape(NARROW, 0);
+    }
+
+    private static IntVector widen(ByteVector rgba, VectorShuffle<Byte> channel) {
+        return ((IntVector) rgba.rearrange(channel).castShape(LANES, 0)).and(0xff);
+    }
+
+    // Sums each 2x2 block: rows first, then every lane with its neighbour, so
+    // even lanes end up holding the rounded block average.
+    private static IntVector average(
+        ByteVector upper,
+        ByteVector lower,
+        VectorShuffle<Byte> channel
+    ) {
+        IntVector rows = widen(upper, channel).add(widen(lower, channel));
+        IntVector sum = rows.add(rows.rearrange(NEIGHBOUR));
+        return sum.add(2).lanewise(VectorOperators.ASHR, 2);
+    }
+
+    private static VectorShuffle<Byte> channel(int component) {
+        int[] indexes = new int[PIXELS.length()];
+        for (int lane = 0; lane < LANES.length(); lane++) {
+            indexes[lane] = lane * 4 + component;
+        }
+        return VectorShuffle.fromArray(PIXELS, indexes, 0);
+    }
+}